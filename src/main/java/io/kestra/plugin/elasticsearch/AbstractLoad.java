@@ -5,22 +5,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.time.Duration;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
 
-import org.slf4j.Logger;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import io.kestra.core.exceptions.IllegalVariableEvaluationException;
 import io.kestra.core.models.annotations.PluginProperty;
-import io.kestra.core.models.executions.metrics.Counter;
-import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.models.flows.State;
 import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.RunnableTask;
 import io.kestra.core.runners.RunContext;
 import io.kestra.core.serializers.FileSerde;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch.core.BulkRequest;
-import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
@@ -29,14 +28,14 @@ import lombok.Builder.Default;
 import lombok.experimental.SuperBuilder;
 import reactor.core.publisher.Flux;
 
-import static io.kestra.core.utils.Rethrow.throwFunction;
-
 @SuperBuilder
 @ToString
 @EqualsAndHashCode
 @Getter
 @NoArgsConstructor
 public abstract class AbstractLoad extends AbstractTask implements RunnableTask<AbstractLoad.Output> {
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 503);
+
     @Schema(
         title = "Source file",
         description = "Kestra internal storage URI containing bulk payload; supports dynamic rendering."
@@ -53,6 +52,72 @@ public abstract class AbstractLoad extends AbstractTask implements RunnableTask<
     @PluginProperty(group = "execution")
     private Property<Integer> chunk = Property.ofValue(1000);
 
+    @Schema(
+        title = "Maximum bulk chunk size in bytes",
+        description = "When set, a bulk request is also flushed once the serialized operations reach this many bytes, whichever of `chunk` or `maxChunkBytes` comes first. Elasticsearch recommends 5 to 15 MB per bulk request. Defaults to 10 MB for `Bulk` with `passthrough`, no limit otherwise."
+    )
+    @PluginProperty(group = "execution")
+    private Property<Long> maxChunkBytes;
+
+    @Schema(
+        title = "Maximum in-flight bulk requests",
+        description = "Number of bulk requests sent concurrently while the next chunks are being built; default 1 sends chunks one at a time."
+    )
+    @Default
+    @PluginProperty(group = "execution")
+    private Property<Integer> maxInFlightRequests = Property.ofValue(1);
+
+    @Schema(
+        title = "Adapt bulk sizing to cluster pressure",
+        description = "When true, the chunk size and in-flight requests are halved each time the cluster rejects items or requests with HTTP 429 (`es_rejected_execution_exception`) and grown back slowly while bulk requests stay fast. `chunk` and `maxInFlightRequests` act as upper bounds; default false."
+    )
+    @Default
+    @PluginProperty(group = "reliability")
+    private Property<Boolean> adaptive = Property.ofValue(false);
+
+    @Schema(
+        title = "Maximum retries of a failed bulk item",
+        description = "Items failing with a retryable status (429, 503, or 409 when `retryVersionConflicts` is true) are resubmitted in later bulk requests up to this many times; once exhausted, or for any other error, they are written to the `failedUri` dead-letter file. Default 10."
+    )
+    @Default
+    @PluginProperty(group = "reliability")
+    private Property<Integer> maxRetries = Property.ofValue(10);
+
+    @Schema(
+        title = "Retry version conflicts",
+        description = "When true, items failing with a 409 version conflict are retried like other retryable items; default false."
+    )
+    @Default
+    @PluginProperty(group = "reliability")
+    private Property<Boolean> retryVersionConflicts = Property.ofValue(false);
+
+    @Schema(
+        title = "Maximum backoff between bulk retries",
+        description = "Upper bound of the exponential backoff applied before resubmitting retryable items; default 30 seconds."
+    )
+    @Default
+    @PluginProperty(group = "reliability")
+    private Property<Duration> maxBackoff = Property.ofValue(Duration.ofSeconds(30));
+
+    @Schema(
+        title = "Parser threads",
+        description = "Number of threads decoding the input file into bulk operations. A single thread reads the file and hands blocks of records to the parser threads, and the original order of the records is kept. " +
+            "With more than 1 thread, `Load` splits its Ion input on lines, so every line must hold exactly one value, as the files written by Kestra tasks do; a line with several values, or a value spread over several lines, fails the load. Default 1 decodes on the reading thread and accepts any Ion stream."
+    )
+    @Default
+    @PluginProperty(group = "processing")
+    private Property<Integer> parserThreads = Property.ofValue(1);
+
+    protected int parserThreads(RunContext runContext) throws IllegalVariableEvaluationException {
+        int parserThreads = runContext.render(this.parserThreads).as(Integer.class).orElse(1);
+
+        if (parserThreads < 1) {
+            throw new IllegalArgumentException("`parserThreads` must be greater than 0");
+        }
+
+        return parserThreads;
+    }
+
     abstract protected Flux<BulkOperation> source(RunContext runContext, InputStream inputStream) throws IllegalVariableEvaluationException, IOException;
 
     @Override
@@ -63,77 +128,47 @@ public abstract class AbstractLoad extends AbstractTask implements RunnableTask<
             ElasticsearchClient client = this.connection.highLevelClient(runContext);
             InputStream inputStream = new BufferedInputStream(runContext.storage().getFile(from), FileSerde.BUFFER_SIZE)
         ) {
-            Integer bufferSize = runContext.render(this.chunk).as(Integer.class).orElseThrow();
-            Flux<BulkOperation> operationFlux = this.source(runContext, inputStream);
-
-            AtomicLong count = executeBulk(runContext, client, operationFlux, bufferSize);
-
-            return Output.builder()
-                .size(count.get())
-                .build();
+            return this.load(runContext, client, inputStream);
         }
     }
 
-    public static AtomicLong executeBulk(
-        RunContext runContext,
-        ElasticsearchClient client,
-        Flux<BulkOperation> operationFlux,
-        Integer bufferSize) throws IOException {
-        AtomicLong count = new AtomicLong();
-        AtomicLong duration = new AtomicLong();
-        Logger logger = runContext.logger();
-
-        Flux<BulkResponse> flowable = operationFlux
-            .doOnNext(docWriteRequest ->
-            {
-                count.incrementAndGet();
-            })
-            .buffer(bufferSize, bufferSize)
-            .map(throwFunction(indexRequests ->
-            {
-                var bulkRequest = new BulkRequest.Builder();
-                bulkRequest.operations(indexRequests);
-
-                return client.bulk(bulkRequest.build());
-            }))
-            .doOnNext(bulkItemResponse ->
-            {
-                duration.addAndGet(bulkItemResponse.took());
-
-                if (bulkItemResponse.errors()) {
-                    throw new RuntimeException("Indexer failed bulk:\n " + logError(bulkItemResponse));
-                }
-            });
-
-        // metrics & finalize
-        Long requestCount = flowable.count().blockOptional().orElse(0L);
-        runContext.metric(Counter.of("requests.count", requestCount));
-        runContext.metric(Counter.of("records", count.get()));
-        runContext.metric(Timer.of("requests.duration", Duration.ofNanos(duration.get())));
-
-        logger.info(
-            "Successfully send {} requests for {} records in {}",
-            requestCount,
-            count.get(),
-            Duration.ofNanos(duration.get())
-        );
-        return count;
+    protected AbstractLoad.Output load(RunContext runContext, ElasticsearchClient client, InputStream inputStream) throws Exception {
+        return this.executor(runContext, BulkService.channel(client))
+            .execute(this.source(runContext, inputStream));
+    }
+
+    protected <T> BulkExecutor<T> executor(RunContext runContext, BulkChannel<T> channel) throws IllegalVariableEvaluationException {
+        return this.executor(runContext, channel, null);
     }
 
-    private static String logError(BulkResponse bulkResponse) {
-        StringBuilder builder = new StringBuilder();
-        bulkResponse.items().forEach(
-            responseItem ->
-            {
-                if (responseItem.error() != null) {
-                    builder
-                        .append(responseItem.index()).append(": ")
-                        .append(responseItem.status()).append(" - ")
-                        .append(responseItem.error().reason()).append('\n');
-                }
-            }
-        );
-        return builder.toString();
+    /**
+     * @param defaultMaxChunkBytes the byte limit of the chunks when `maxChunkBytes` is not set, null for none
+     */
+    protected <T> BulkExecutor<T> executor(RunContext runContext, BulkChannel<T> channel, Long defaultMaxChunkBytes) throws IllegalVariableEvaluationException {
+        Integer bufferSize = runContext.render(this.chunk).as(Integer.class).orElseThrow();
+        Integer maxInFlightRequests = runContext.render(this.maxInFlightRequests).as(Integer.class).orElse(1);
+        Duration maxBackoff = runContext.render(this.maxBackoff).as(Duration.class).orElseThrow();
+
+        Set<Integer> retryableStatuses = new HashSet<>(RETRYABLE_STATUSES);
+        if (runContext.render(this.retryVersionConflicts).as(Boolean.class).orElse(false)) {
+            retryableStatuses.add(409);
+        }
+
+        return BulkExecutor.<T>builder()
+            .runContext(runContext)
+            .channel(channel)
+            .chunk(bufferSize)
+            .maxChunkBytes(runContext.render(this.maxChunkBytes).as(Long.class).orElse(defaultMaxChunkBytes))
+            .maxInFlightRequests(maxInFlightRequests)
+            .controller(
+                runContext.render(this.adaptive).as(Boolean.class).orElse(false) ?
+                    new AdaptiveBulkController(bufferSize, maxInFlightRequests, maxBackoff) :
+                    null
+            )
+            .maxRetries(runContext.render(this.maxRetries).as(Integer.class).orElse(10))
+            .maxBackoff(maxBackoff)
+            .retryableStatuses(retryableStatuses)
+            .build();
     }
 
     @Builder
@@ -144,5 +179,29 @@ public abstract class AbstractLoad extends AbstractTask implements RunnableTask<
             description = "Total operations sent across all bulk requests."
         )
         private Long size;
+
+        @Schema(
+            title = "Retried operation count",
+            description = "Number of operations resubmitted after a retryable failure; an operation retried twice is counted twice."
+        )
+        private Long retriedCount;
+
+        @Schema(
+            title = "Failed operation count",
+            description = "Number of operations that failed permanently and were written to `failedUri`."
+        )
+        private Long failedCount;
+
+        @Schema(
+            title = "Failed operations URI",
+            description = "Kestra internal storage path to an NDJSON file with the failed operations, as the lines sent to the Elasticsearch bulk API, ready to be replayed with the `Bulk` task, with `passthrough` or `updateBody`; only set when some operations failed."
+        )
+        private URI failedUri;
+
+        @JsonIgnore
+        @Override
+        public Optional<State.Type> finalState() {
+            return this.failedCount != null && this.failedCount > 0 ? Optional.of(State.Type.WARNING) : Optional.empty();
+        }
     }
 }
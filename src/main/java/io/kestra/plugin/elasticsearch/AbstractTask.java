@@ -20,7 +20,11 @@ import io.kestra.core.models.annotations.PluginProperty;
 public abstract class AbstractTask extends Task {
     @Schema(
         title = "Elasticsearch connection",
-        description = "Connection settings shared by tasks; hosts are required."
+        description = "Connection settings shared by tasks; hosts are required. " +
+            "Every task also reports the metrics of its connection: `bytes.sent` and `bytes.received` (body bytes, compressed when `compression` is enabled); " +
+            "`node.requests`, `node.errors` and `node.latency` tagged by `host`; " +
+            "`http.requests`, `http.duration`, `http.latency.p50`, `http.latency.p95`, `http.latency.p99`, `http.latency.max`, `http.bytes.sent`, `http.bytes.received` tagged by `endpoint` type, and `http.status` also tagged by `status`; " +
+            "`retry.count` tagged by `endpoint` and `retry.backoff` with a `retry` policy; `circuit.rejected` and `circuit.opened` with a `circuitBreaker`."
     )
     @NotNull
     @PluginProperty(group = "main")
@@ -0,0 +1,177 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Adjusts bulk chunk size and in-flight requests to the cluster capacity.
+ * <p>
+ * Every rejection (HTTP 429 / {@code es_rejected_execution_exception}) halves the chunk size and the number of
+ * in-flight requests and doubles the backoff, while every {@link #GROWTH_INTERVAL} consecutive healthy responses
+ * grow them back by a small step.
+ */
+public class AdaptiveBulkController {
+    static final Duration INITIAL_BACKOFF = Duration.ofMillis(100);
+    static final Duration HEALTHY_TOOK = Duration.ofSeconds(1);
+    static final int GROWTH_INTERVAL = 5;
+
+    private final int maxChunkSize;
+    private final int maxInFlightRequests;
+    private final Duration maxBackoff;
+
+    private final Deque<MonoSink<Void>> waiters = new ArrayDeque<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong backoffDuration = new AtomicLong();
+
+    private volatile int chunkSize;
+    private int inFlightLimit;
+    private int inFlight;
+    private int healthyResponses;
+    private Duration backoff = Duration.ZERO;
+
+    public AdaptiveBulkController(int maxChunkSize, int maxInFlightRequests, Duration maxBackoff) {
+        this.maxChunkSize = maxChunkSize;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.maxBackoff = maxBackoff;
+        this.chunkSize = maxChunkSize;
+        this.inFlightLimit = maxInFlightRequests;
+    }
+
+    public int chunkSize() {
+        return this.chunkSize;
+    }
+
+    public synchronized int inFlightLimit() {
+        return this.inFlightLimit;
+    }
+
+    public synchronized Duration backoff() {
+        return this.backoff;
+    }
+
+    public long rejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    public Duration backoffDuration() {
+        return Duration.ofMillis(this.backoffDuration.get());
+    }
+
+    synchronized int inFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Completes once a request slot is available under the current in-flight limit. The slot must be given back with
+     * {@link #release()} only once acquired: cancelling the wait for a slot removes the waiter, or gives back the slot
+     * handed to it meanwhile.
+     */
+    public Mono<Void> acquire() {
+        return Mono.create(sink ->
+        {
+            synchronized (this) {
+                if (this.inFlight < this.inFlightLimit) {
+                    this.inFlight++;
+                } else {
+                    this.waiters.add(sink);
+                    sink.onCancel(() -> this.cancel(sink));
+                    return;
+                }
+            }
+
+            sink.success();
+        });
+    }
+
+    private void cancel(MonoSink<Void> sink) {
+        boolean waiting;
+
+        synchronized (this) {
+            waiting = this.waiters.remove(sink);
+        }
+
+        if (!waiting) {
+            // the slot was handed to the waiter while it was being cancelled, it will never be released otherwise
+            this.release();
+        }
+    }
+
+    public void release() {
+        MonoSink<Void> next;
+
+        synchronized (this) {
+            this.inFlight--;
+            next = this.poll();
+        }
+
+        while (next != null) {
+            next.success();
+
+            synchronized (this) {
+                next = this.poll();
+            }
+        }
+    }
+
+    private MonoSink<Void> poll() {
+        if (this.inFlight >= this.inFlightLimit || this.waiters.isEmpty()) {
+            return null;
+        }
+
+        this.inFlight++;
+        return this.waiters.poll();
+    }
+
+    /**
+     * Shrinks chunk size and in-flight requests, and returns the backoff to wait before retrying.
+     */
+    public synchronized Duration onRejected() {
+        this.rejectedCount.incrementAndGet();
+        this.healthyResponses = 0;
+        this.chunkSize = Math.max(1, this.chunkSize / 2);
+        this.inFlightLimit = Math.max(1, this.inFlightLimit / 2);
+
+        Duration next = this.backoff.isZero() ? INITIAL_BACKOFF : this.backoff.multipliedBy(2);
+        this.backoff = next.compareTo(this.maxBackoff) > 0 ? this.maxBackoff : next;
+        this.backoffDuration.addAndGet(this.backoff.toMillis());
+
+        return this.backoff;
+    }
+
+    /**
+     * Grows chunk size and in-flight requests back after enough healthy responses.
+     */
+    public void onSuccess(Duration took) {
+        MonoSink<Void> next = null;
+
+        synchronized (this) {
+            if (took.compareTo(HEALTHY_TOOK) > 0) {
+                this.healthyResponses = 0;
+                return;
+            }
+
+            this.backoff = Duration.ZERO;
+
+            if (++this.healthyResponses < GROWTH_INTERVAL) {
+                return;
+            }
+
+            this.healthyResponses = 0;
+            this.chunkSize = Math.min(this.maxChunkSize, this.chunkSize + Math.max(1, this.maxChunkSize / 10));
+
+            if (this.inFlightLimit < this.maxInFlightRequests) {
+                this.inFlightLimit++;
+                next = this.poll();
+            }
+        }
+
+        if (next != null) {
+            next.success();
+        }
+    }
+}
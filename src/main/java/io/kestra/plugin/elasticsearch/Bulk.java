@@ -1,34 +1,51 @@
 package io.kestra.plugin.elasticsearch;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.function.Consumer;
+import java.util.Set;
 
 import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
 import io.kestra.core.models.annotations.Example;
 import io.kestra.core.models.annotations.Metric;
 import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.annotations.PluginProperty;
 import io.kestra.core.models.executions.metrics.Counter;
 import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.RunnableTask;
 import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.FileSerde;
 import io.kestra.core.serializers.JacksonMapper;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Script;
 import co.elastic.clients.elasticsearch.core.bulk.*;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
 
 import static io.kestra.core.utils.Rethrow.throwConsumer;
 
@@ -39,13 +56,20 @@ import static io.kestra.core.utils.Rethrow.throwConsumer;
 @NoArgsConstructor
 @Schema(
     title = "Replay Elasticsearch bulk file",
-    description = "Reads an Elasticsearch bulk file (NDJSON or Ion) from Kestra storage and replays operations. Follows the bulk file contract; see Elasticsearch bulk API docs for format."
+    description = "Reads an Elasticsearch bulk file (NDJSON or Ion) from Kestra storage and replays operations. Follows the bulk file contract; see Elasticsearch bulk API docs for format. " +
+        "The line following an `update` action is the partial document, upserted, unless `updateBody` is true."
 )
 @Plugin(
     metrics = {
         @Metric(name = "requests.count", type = Counter.TYPE, description = "Number of bulk requests sent"),
         @Metric(name = "records", type = Counter.TYPE, unit = "records", description = "Number of records loaded"),
-        @Metric(name = "requests.duration", type = Timer.TYPE, description = "Duration of bulk requests")
+        @Metric(name = "requests.duration", type = Timer.TYPE, description = "Duration of bulk requests"),
+        @Metric(name = "requests.concurrency", type = Counter.TYPE, description = "Highest number of bulk requests in flight at once"),
+        @Metric(name = "retried.count", type = Counter.TYPE, description = "Number of operations resubmitted after a retryable failure"),
+        @Metric(name = "failed.count", type = Counter.TYPE, description = "Number of operations written to the dead-letter file"),
+        @Metric(name = "chunk.size", type = Counter.TYPE, description = "Chunk size reached by the adaptive controller at the end of the load, only with `adaptive`"),
+        @Metric(name = "rejected.count", type = Counter.TYPE, description = "Number of bulk requests rejected by the cluster, only with `adaptive`"),
+        @Metric(name = "backoff.duration", type = Timer.TYPE, description = "Time spent backing off after rejections, only with `adaptive`")
     },
     examples = {
         @Example(
@@ -71,93 +95,392 @@ import static io.kestra.core.utils.Rethrow.throwConsumer;
 )
 public class Bulk extends AbstractLoad implements RunnableTask<Bulk.Output> {
     private static final ObjectMapper OBJECT_MAPPER = JacksonMapper.ofJson();
+    private static final long PASSTHROUGH_MAX_CHUNK_BYTES = 10L * 1024 * 1024;
+    private static final JsonpMapper JSONP_MAPPER = new JacksonJsonpMapper();
+    private static final Set<String> UPDATE_BODY_FIELDS = Set.of("doc", "upsert", "script", "_source", "doc_as_upsert", "scripted_upsert", "detect_noop");
+
+    @Schema(
+        title = "Send the file as-is",
+        description = "When true, the NDJSON lines of the file are streamed directly as the `_bulk` request body, split on action boundaries, without deserializing documents; only the responses are parsed. Requires an NDJSON file that is already a valid Elasticsearch bulk payload; Ion files are not supported. " +
+            "As documents are not counted in memory, bulk requests are also flushed at 10 MB unless `maxChunkBytes` is set. Default false."
+    )
+    @Builder.Default
+    @PluginProperty(group = "processing")
+    private Property<Boolean> passthrough = Property.ofValue(false);
+
+    @Schema(
+        title = "Read update lines as bulk update bodies",
+        description = "When true, the line following an `update` action is a bulk update body, as sent to the Elasticsearch bulk API and written to `failedUri`: " +
+            "`doc`, `upsert`, `script`, `_source`, `doc_as_upsert`, `scripted_upsert` and `detect_noop`. When false, the line is the partial document, upserted. " +
+            "Set it to true to replay a `failedUri` file without `passthrough`, which always sends the lines as is. Default false."
+    )
+    @Builder.Default
+    @PluginProperty(group = "processing")
+    private Property<Boolean> updateBody = Property.ofValue(false);
 
     @Override
-    protected Flux<BulkOperation> source(RunContext runContext, InputStream inputStream) throws IOException {
-        return Flux
-            .create(this.fileReader(new BufferedReader(new InputStreamReader(inputStream))), FluxSink.OverflowStrategy.BUFFER);
+    protected AbstractLoad.Output load(RunContext runContext, ElasticsearchClient client, InputStream inputStream) throws Exception {
+        if (!runContext.render(this.passthrough).as(Boolean.class).orElse(false)) {
+            return super.load(runContext, client, inputStream);
+        }
+
+        return this.executor(runContext, BulkService.rawChannel(client), PASSTHROUGH_MAX_CHUNK_BYTES)
+            .execute(this.rawSource(inputStream));
     }
 
-    @SuppressWarnings("unchecked")
-    public Consumer<FluxSink<BulkOperation>> fileReader(BufferedReader input) throws IOException {
-        return throwConsumer(s ->
-        {
-            String row;
-            Boolean isJson = null;
-
-            while ((row = input.readLine()) != null) {
-                // validate if it's json or ion
-                if (isJson == null) {
-                    try {
-                        OBJECT_MAPPER.readTree(row);
-                        isJson = true;
-                    } catch (JacksonException e) {
-                        isJson = false;
+    @Override
+    protected Flux<BulkOperation> source(RunContext runContext, InputStream inputStream) throws IllegalVariableEvaluationException {
+        boolean updateBody = runContext.render(this.updateBody).as(Boolean.class).orElse(false);
+
+        return BulkService.decode(read(inputStream), this.parserThreads(runContext), lines -> operation(lines, updateBody));
+    }
+
+    /**
+     * Reads the lines of one operation per downstream request as the bytes of the file, without decoding them.
+     */
+    protected Flux<BulkService.RawOperation> rawSource(InputStream inputStream) {
+        return Flux.generate(
+            () -> new RawBulkFileReader(inputStream),
+            (reader, sink) ->
+            {
+                try {
+                    BulkService.RawOperation operation = reader.next();
+
+                    if (operation == null) {
+                        sink.complete();
+                    } else {
+                        sink.next(operation);
                     }
+                } catch (IOException e) {
+                    sink.error(e);
                 }
 
-                Map<String, Object> data;
-                if (isJson) {
-                    data = JacksonMapper.toMap(row);
-                } else {
-                    data = JacksonMapper.ofIon().readValue(row, JacksonMapper.MAP_TYPE_REFERENCE);
-                }
+                return reader;
+            },
+            throwConsumer(RawBulkFileReader::close)
+        );
+    }
+
+    /**
+     * Reads the lines of one operation per downstream request, so only the operations of the chunks being sent are
+     * kept in memory, whatever the size of the file. Lines are only split on action boundaries here, decoding them is
+     * left to {@link #operation(BulkLines, boolean)} that can run on parser threads.
+     */
+    private static Flux<BulkLines> read(InputStream inputStream) {
+        return Flux.generate(
+            () -> new BulkFileReader(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))),
+            (reader, sink) ->
+            {
+                try {
+                    BulkLines lines = reader.next();
 
-                Map.Entry<String, Object> operation = data.entrySet().iterator().next();
-                Map<String, Object> value = (Map<String, Object>) operation.getValue();
-
-                var bulkOperation = new BulkOperation.Builder();
-
-                switch (operation.getKey()) {
-                    case "index":
-                        var indexOperation = new IndexOperation.Builder<>()
-                            .id((String) value.get("_id"))
-                            .index((String) value.get("_index"))
-                            .document(parseline(isJson, input.readLine()));
-                        bulkOperation.index(indexOperation.build());
-                        break;
-                    case "create":
-                        var createOperation = new CreateOperation.Builder<>()
-                            .id((String) value.get("_id"))
-                            .index((String) value.get("_index"))
-                            .ifPrimaryTerm(0L) //FIXME opType
-                            .document(parseline(isJson, input.readLine()));
-                        bulkOperation.create(createOperation.build());
-                        break;
-                    case "update":
-                        var updateOperation = new UpdateOperation.Builder<>()
-                            .id((String) value.get("_id"))
-                            .index((String) value.get("_index"))
-                            .action(
-                                new UpdateAction.Builder<>()
-                                    .docAsUpsert(true)
-                                    .doc(parseline(isJson, input.readLine()))
-                                    .build()
-                            );
-                        bulkOperation.update(updateOperation.build());
-                        break;
-                    case "delete":
-                        var deleteOperation = new DeleteOperation.Builder()
-                            .id((String) value.get("_id"))
-                            .index((String) value.get("_index"));
-                        bulkOperation.delete(deleteOperation.build());
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Invalid bulk request type on '" + row + "'");
+                    if (lines == null) {
+                        sink.complete();
+                    } else {
+                        sink.next(lines);
+                    }
+                } catch (IOException e) {
+                    sink.error(e);
                 }
 
-                s.next(bulkOperation.build());
-            }
+                return reader;
+            },
+            throwConsumer(BulkFileReader::close)
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BulkOperation operation(BulkLines lines, boolean updateBody) throws IOException {
+        Map<String, Object> data;
+        if (lines.json()) {
+            data = JacksonMapper.toMap(lines.action());
+        } else {
+            data = JacksonMapper.ofIon().readValue(lines.action(), JacksonMapper.MAP_TYPE_REFERENCE);
+        }
 
-            s.complete();
-        });
+        Map.Entry<String, Object> operation = data.entrySet().iterator().next();
+        Map<String, Object> value = (Map<String, Object>) operation.getValue();
+
+        var bulkOperation = new BulkOperation.Builder();
+
+        switch (operation.getKey()) {
+            case "index":
+                var indexOperation = new IndexOperation.Builder<>()
+                    .id((String) value.get("_id"))
+                    .index((String) value.get("_index"))
+                    .document(parseline(lines.json(), lines.source()));
+                bulkOperation.index(indexOperation.build());
+                break;
+            case "create":
+                var createOperation = new CreateOperation.Builder<>()
+                    .id((String) value.get("_id"))
+                    .index((String) value.get("_index"))
+                    .ifPrimaryTerm(0L) //FIXME opType
+                    .document(parseline(lines.json(), lines.source()));
+                bulkOperation.create(createOperation.build());
+                break;
+            case "update":
+                var updateOperation = new UpdateOperation.Builder<>()
+                    .id((String) value.get("_id"))
+                    .index((String) value.get("_index"))
+                    .action(updateAction(parseline(lines.json(), lines.source()), updateBody));
+                bulkOperation.update(updateOperation.build());
+                break;
+            case "delete":
+                var deleteOperation = new DeleteOperation.Builder()
+                    .id((String) value.get("_id"))
+                    .index((String) value.get("_index"));
+                bulkOperation.delete(deleteOperation.build());
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid bulk request type on '" + lines.action() + "'");
+        }
+
+        return bulkOperation.build();
     }
 
-    private static Map<?, ?> parseline(Boolean isJson, String line) throws JsonProcessingException {
+    /**
+     * Reads the source line of an `update`: a bulk update body with `updateBody`, as written to the dead-letter files,
+     * otherwise the partial document upserted as is.
+     */
+    private static UpdateAction<Object, Object> updateAction(Map<?, ?> source, boolean updateBody) throws IOException {
+        var updateAction = new UpdateAction.Builder<>();
+
+        if (!updateBody) {
+            return updateAction
+                .doc(source)
+                .docAsUpsert(true)
+                .build();
+        }
+
+        if (!UPDATE_BODY_FIELDS.containsAll(source.keySet())) {
+            throw new IllegalArgumentException("Invalid bulk update body with `updateBody`, unknown fields in " + source.keySet() + ", expected " + UPDATE_BODY_FIELDS);
+        }
+
+        if (source.get("doc") != null) {
+            updateAction.doc(source.get("doc"));
+        }
+        if (source.get("upsert") != null) {
+            updateAction.upsert(source.get("upsert"));
+        }
+        if (source.get("script") != null) {
+            updateAction.script(deserialize(Script._DESERIALIZER, source.get("script")));
+        }
+        if (source.get("_source") != null) {
+            updateAction.source(deserialize(SourceConfig._DESERIALIZER, source.get("_source")));
+        }
+        if (source.get("doc_as_upsert") instanceof Boolean docAsUpsert) {
+            updateAction.docAsUpsert(docAsUpsert);
+        }
+        if (source.get("scripted_upsert") instanceof Boolean scriptedUpsert) {
+            updateAction.scriptedUpsert(scriptedUpsert);
+        }
+        if (source.get("detect_noop") instanceof Boolean detectNoop) {
+            updateAction.detectNoop(detectNoop);
+        }
+
+        return updateAction.build();
+    }
+
+    private static <T> T deserialize(JsonpDeserializer<T> deserializer, Object value) throws IOException {
+        try (var parser = JSONP_MAPPER.jsonProvider().createParser(new StringReader(OBJECT_MAPPER.writeValueAsString(value)))) {
+            return deserializer.deserialize(parser, JSONP_MAPPER);
+        }
+    }
+
+    private static Map<?, ?> parseline(boolean isJson, String line) throws JsonProcessingException {
         if (isJson) {
             return OBJECT_MAPPER.readValue(line, JacksonMapper.MAP_TYPE_REFERENCE);
         } else {
             return JacksonMapper.ofIon().readValue(line, JacksonMapper.MAP_TYPE_REFERENCE);
         }
     }
+
+    /**
+     * The undecoded lines of a bulk operation.
+     *
+     * @param action the action line
+     * @param source the source line, null for `delete`
+     * @param json whether the lines are JSON or Ion
+     */
+    private record BulkLines(String action, String source, boolean json) {
+    }
+
+    private static class BulkFileReader implements Closeable {
+        private final BufferedReader input;
+        private Boolean isJson;
+
+        private BulkFileReader(BufferedReader input) {
+            this.input = input;
+        }
+
+        private BulkLines next() throws IOException {
+            String row;
+            do {
+                row = this.input.readLine();
+            } while (row != null && row.isBlank());
+
+            if (row == null) {
+                return null;
+            }
+
+            // validate if it's json or ion
+            if (this.isJson == null) {
+                try {
+                    OBJECT_MAPPER.readTree(row);
+                    this.isJson = true;
+                } catch (JacksonException e) {
+                    this.isJson = false;
+                }
+            }
+
+            String source = switch (actionName(this.isJson ? OBJECT_MAPPER : JacksonMapper.ofIon(), row)) {
+                case "index", "create", "update" -> {
+                    String line = this.input.readLine();
+                    if (line == null) {
+                        throw new IllegalArgumentException("Missing source line after '" + row + "'");
+                    }
+                    yield line;
+                }
+                case "delete" -> null;
+                default -> throw new IllegalArgumentException("Invalid bulk request type on '" + row + "'");
+            };
+
+            return new BulkLines(row, source, this.isJson);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.input.close();
+        }
+    }
+
+    /**
+     * Splits an NDJSON file on line feeds straight from its bytes, for lines that are sent as they are read.
+     */
+    private static class RawBulkFileReader implements Closeable {
+        private final InputStream input;
+        private final byte[] buffer = new byte[FileSerde.BUFFER_SIZE];
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private int position;
+        private int limit;
+
+        private RawBulkFileReader(InputStream input) {
+            this.input = input;
+        }
+
+        private BulkService.RawOperation next() throws IOException {
+            byte[] action;
+            do {
+                action = this.readLine();
+            } while (action != null && isBlank(action));
+
+            if (action == null) {
+                return null;
+            }
+
+            String name;
+            try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(action)) {
+                name = actionName(parser);
+            } catch (JacksonException e) {
+                name = null;
+            }
+
+            if (name == null) {
+                throw new IllegalArgumentException("Invalid bulk action line '" + new String(action, StandardCharsets.UTF_8) + "', `passthrough` requires an NDJSON file");
+            }
+
+            byte[] source = switch (name) {
+                case "index", "create", "update" -> {
+                    byte[] line = this.readLine();
+                    if (line == null) {
+                        throw new IllegalArgumentException("Missing source line after '" + new String(action, StandardCharsets.UTF_8) + "'");
+                    }
+                    yield line;
+                }
+                case "delete" -> null;
+                default -> throw new IllegalArgumentException("Invalid bulk request type on '" + new String(action, StandardCharsets.UTF_8) + "'");
+            };
+
+            return new BulkService.RawOperation(action, source);
+        }
+
+        /**
+         * @return the next line without its line terminator, null at the end of the file
+         */
+        private byte[] readLine() throws IOException {
+            this.line.reset();
+
+            while (true) {
+                if (this.position == this.limit) {
+                    this.position = 0;
+                    this.limit = Math.max(this.input.read(this.buffer), 0);
+
+                    if (this.limit == 0) {
+                        return this.line.size() > 0 ? this.line() : null;
+                    }
+                }
+
+                int start = this.position;
+                while (this.position < this.limit && this.buffer[this.position] != '\n') {
+                    this.position++;
+                }
+
+                this.line.write(this.buffer, start, this.position - start);
+
+                if (this.position < this.limit) {
+                    this.position++;
+                    return this.line();
+                }
+            }
+        }
+
+        private byte[] line() {
+            byte[] line = this.line.toByteArray();
+
+            return line.length > 0 && line[line.length - 1] == '\r' ? Arrays.copyOf(line, line.length - 1) : line;
+        }
+
+        private static boolean isBlank(byte[] line) {
+            for (byte b : line) {
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.input.close();
+        }
+    }
+
+    /**
+     * Reads only the first key of an action line, leaving the rest of the line unparsed.
+     */
+    private static String actionName(ObjectMapper mapper, String row) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(row)) {
+            String name = actionName(parser);
+            if (name == null) {
+                throw new IllegalArgumentException("Invalid bulk action line '" + row + "'");
+            }
+
+            return name;
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Invalid bulk action line '" + row + "'", e);
+        }
+    }
+
+    /**
+     * @return the first key of the action line, null if the line is not an object
+     */
+    private static String actionName(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+
+        return parser.nextFieldName();
+    }
 }
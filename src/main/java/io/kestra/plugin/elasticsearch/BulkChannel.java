@@ -0,0 +1,45 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * How a kind of bulk operation is serialized and sent to Elasticsearch.
+ *
+ * @param <T> the operation type
+ */
+public interface BulkChannel<T> {
+    /**
+     * Writes the NDJSON lines of the operation (action line and optional source line) as sent to Elasticsearch.
+     */
+    void write(OutputStream output, T operation) throws IOException;
+
+    /**
+     * Sends the operations in a single bulk request, without blocking a thread while waiting for the response.
+     */
+    Mono<BulkResponse> send(List<T> operations);
+
+    /**
+     * Measures the size in bytes of the operation in the bulk request body. The operation to send is the one returned,
+     * that can keep what was serialized to measure it, so it isn't serialized again once sent.
+     */
+    default Sized<T> sized(T operation) throws IOException {
+        try (CountingOutputStream output = new CountingOutputStream(ByteStreams.nullOutputStream())) {
+            this.write(output, operation);
+            return new Sized<>(operation, output.getCount());
+        }
+    }
+
+    /**
+     * An operation ready to be sent, and its size in bytes in the bulk request body.
+     */
+    record Sized<T>(T operation, long size) {
+    }
+}
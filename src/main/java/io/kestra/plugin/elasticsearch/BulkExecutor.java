@@ -0,0 +1,315 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.FileSerde;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.transport.TransportException;
+import co.elastic.clients.transport.rest5_client.low_level.ResponseException;
+import lombok.Builder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends a flow of bulk operations in chunks and handles every item of the bulk responses: retryable items are
+ * resubmitted in later bulk requests with an exponential backoff, and items that failed permanently are written to a
+ * dead-letter NDJSON file with the lines sent to Elasticsearch, so it can be replayed with the {@link Bulk} task, with
+ * or without `passthrough`.
+ */
+public class BulkExecutor<T> {
+    static final Duration INITIAL_BACKOFF = Duration.ofMillis(100);
+    private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+    private static final int LOGGED_FAILURES = 10;
+
+    private final RunContext runContext;
+    private final BulkChannel<T> channel;
+    private final int chunk;
+    private final Long maxChunkBytes;
+    private final int maxInFlightRequests;
+    private final AdaptiveBulkController controller;
+    private final int maxRetries;
+    private final Duration maxBackoff;
+    private final Set<Integer> retryableStatuses;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong duration = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private File deadLetterFile;
+    private OutputStream deadLetter;
+
+    @Builder
+    private BulkExecutor(
+        RunContext runContext,
+        BulkChannel<T> channel,
+        int chunk,
+        Long maxChunkBytes,
+        int maxInFlightRequests,
+        AdaptiveBulkController controller,
+        int maxRetries,
+        Duration maxBackoff,
+        Set<Integer> retryableStatuses) {
+        this.runContext = runContext;
+        this.channel = channel;
+        this.chunk = chunk;
+        this.maxChunkBytes = maxChunkBytes;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.controller = controller;
+        this.maxRetries = maxRetries;
+        this.maxBackoff = maxBackoff;
+        this.retryableStatuses = retryableStatuses;
+    }
+
+    public AbstractLoad.Output execute(Flux<T> operationFlux) throws IOException {
+        if (this.maxChunkBytes != null && this.maxChunkBytes < 1) {
+            throw new IllegalArgumentException("`maxChunkBytes` must be greater than 0");
+        }
+
+        if (this.maxInFlightRequests < 1) {
+            throw new IllegalArgumentException("`maxInFlightRequests` must be greater than 0");
+        }
+
+        Logger logger = this.runContext.logger();
+
+        Flux<T> counted = operationFlux
+            .doOnNext(docWriteRequest ->
+            {
+                count.incrementAndGet();
+            });
+
+        Function<T, BulkChannel.Sized<T>> sizer = operation ->
+        {
+            try {
+                return this.channel.sized(operation);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        Flux<List<T>> chunks = this.controller == null ?
+            BulkService.chunk(counted, this.chunk, this.maxChunkBytes, sizer) :
+            BulkService.chunk(counted, this.controller::chunkSize, this.maxChunkBytes, sizer);
+
+        URI failedUri = null;
+        try {
+            chunks
+                .flatMap(operations -> this.send(operations, 1), this.maxInFlightRequests)
+                .blockLast();
+        } finally {
+            if (this.deadLetter != null) {
+                this.deadLetter.close();
+                failedUri = this.runContext.storage().putFile(this.deadLetterFile);
+            }
+        }
+
+        // metrics & finalize
+        this.runContext.metric(Counter.of("requests.count", this.requestCount.get()));
+        this.runContext.metric(Counter.of("records", this.count.get()));
+        this.runContext.metric(Timer.of("requests.duration", Duration.ofMillis(this.duration.get())));
+        this.runContext.metric(Counter.of("requests.concurrency", this.maxInFlight.get()));
+        this.runContext.metric(Counter.of("retried.count", this.retriedCount.get()));
+        this.runContext.metric(Counter.of("failed.count", this.failedCount.get()));
+
+        if (this.controller != null) {
+            this.runContext.metric(Counter.of("chunk.size", this.controller.chunkSize()));
+            this.runContext.metric(Counter.of("rejected.count", this.controller.rejectedCount()));
+            this.runContext.metric(Timer.of("backoff.duration", this.controller.backoffDuration()));
+        }
+
+        logger.info(
+            "Successfully send {} requests for {} records in {}",
+            this.requestCount.get(),
+            this.count.get(),
+            Duration.ofMillis(this.duration.get())
+        );
+
+        if (this.failedCount.get() > 0) {
+            logger.warn("{} operations failed permanently and were written to {}", this.failedCount.get(), failedUri);
+        }
+
+        return AbstractLoad.Output.builder()
+            .size(this.count.get())
+            .retriedCount(this.retriedCount.get())
+            .failedCount(this.failedCount.get())
+            .failedUri(failedUri)
+            .build();
+    }
+
+    private Mono<Void> send(List<T> operations, int attempt) {
+        Mono<BulkResponse> request = Mono.defer(() -> this.channel.send(operations))
+            .doOnSubscribe(subscription -> this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max))
+            .doFinally(signalType -> this.inFlight.decrementAndGet());
+
+        if (this.controller != null) {
+            // the slot is only released by the request subscribed once it was acquired
+            request = this.controller.acquire()
+                .then(request.doFinally(signalType -> this.controller.release()));
+        }
+
+        return request
+            .flatMap(bulkItemResponse ->
+            {
+                this.requestCount.incrementAndGet();
+                this.duration.addAndGet(bulkItemResponse.took());
+
+                if (!bulkItemResponse.errors()) {
+                    if (this.controller != null) {
+                        this.controller.onSuccess(Duration.ofMillis(bulkItemResponse.took()));
+                    }
+
+                    return Mono.<Void>empty();
+                }
+
+                List<T> retryable = new ArrayList<>();
+                boolean rejected = false;
+                for (int i = 0; i < bulkItemResponse.items().size(); i++) {
+                    BulkResponseItem item = bulkItemResponse.items().get(i);
+
+                    if (item.error() == null) {
+                        continue;
+                    }
+
+                    if (attempt <= this.maxRetries && this.isRetryable(item)) {
+                        retryable.add(operations.get(i));
+                        rejected = rejected || isRejected(item);
+                    } else {
+                        this.deadLetter(operations.get(i), item.status(), item.error().type(), item.error().reason());
+                    }
+                }
+
+                return this.retry(retryable, rejected, attempt);
+            })
+            .onErrorResume(
+                throwable -> attempt <= this.maxRetries && this.isRetryable(throwable),
+                throwable ->
+                {
+                    this.requestCount.incrementAndGet();
+                    return this.retry(operations, isRejected(throwable), attempt);
+                }
+            );
+    }
+
+    private Mono<Void> retry(List<T> operations, boolean rejected, int attempt) {
+        if (operations.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Duration backoff;
+        if (rejected && this.controller != null) {
+            backoff = this.controller.onRejected();
+        } else {
+            backoff = this.backoff(attempt);
+        }
+
+        this.retriedCount.addAndGet(operations.size());
+        this.runContext.logger().warn(
+            "Retrying {} bulk operations in {} (attempt {}/{})",
+            operations.size(),
+            backoff,
+            attempt,
+            this.maxRetries
+        );
+
+        return Mono.delay(backoff)
+            .then(Mono.defer(() -> this.send(operations, attempt + 1)));
+    }
+
+    private Duration backoff(int attempt) {
+        Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << Math.min(attempt - 1, 20));
+
+        return backoff.compareTo(this.maxBackoff) > 0 ? this.maxBackoff : backoff;
+    }
+
+    private boolean isRetryable(BulkResponseItem item) {
+        return this.retryableStatuses.contains(item.status()) || isRejected(item);
+    }
+
+    private boolean isRetryable(Throwable throwable) {
+        if (throwable instanceof ElasticsearchException elasticsearchException) {
+            return this.retryableStatuses.contains(elasticsearchException.status()) || isRejected(throwable);
+        }
+
+        if (throwable instanceof TransportException transportException) {
+            return this.retryableStatuses.contains(transportException.statusCode()) || isRejected(throwable);
+        }
+
+        if (throwable instanceof ResponseException responseException) {
+            return this.retryableStatuses.contains(responseException.getResponse().getStatusCode()) || isRejected(throwable);
+        }
+
+        return false;
+    }
+
+    private static boolean isRejected(BulkResponseItem item) {
+        return item.status() == 429 || (item.error() != null && REJECTED_EXECUTION.equals(item.error().type()));
+    }
+
+    /**
+     * Whether the whole request was rejected, whatever the client it went through: typed requests fail with an
+     * {@link ElasticsearchException}, passthrough and SMILE requests sent with the low-level client with a
+     * {@link ResponseException}.
+     */
+    private static boolean isRejected(Throwable throwable) {
+        if (throwable instanceof ElasticsearchException elasticsearchException) {
+            return elasticsearchException.status() == 429 || REJECTED_EXECUTION.equals(elasticsearchException.error().type());
+        }
+
+        if (throwable instanceof ResponseException responseException) {
+            return responseException.getResponse().getStatusCode() == 429;
+        }
+
+        if (throwable instanceof TransportException transportException) {
+            return transportException.statusCode() == 429;
+        }
+
+        return false;
+    }
+
+    private synchronized void deadLetter(T operation, int status, String type, String reason) {
+        long failed = this.failedCount.incrementAndGet();
+        Logger logger = this.runContext.logger();
+
+        if (failed <= LOGGED_FAILURES) {
+            logger.warn("Bulk operation failed with {} - {}: {}", status, type, reason);
+        } else {
+            logger.debug("Bulk operation failed with {} - {}: {}", status, type, reason);
+        }
+
+        try {
+            if (this.deadLetter == null) {
+                this.deadLetterFile = this.runContext.workingDir().createTempFile(".json").toFile();
+                this.deadLetter = new BufferedOutputStream(new FileOutputStream(this.deadLetterFile), FileSerde.BUFFER_SIZE);
+            }
+
+            // replay exactly the lines sent to Elasticsearch: the action line and its optional source line
+            this.channel.write(this.deadLetter, operation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
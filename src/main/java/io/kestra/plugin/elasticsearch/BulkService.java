@@ -0,0 +1,336 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+
+import io.kestra.core.utils.Rethrow;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.CreateOperation;
+import co.elastic.clients.elasticsearch.core.bulk.IndexOperation;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.transport.rest5_client.low_level.Request;
+import co.elastic.clients.util.BinaryData;
+import jakarta.json.stream.JsonGenerator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static io.kestra.core.utils.Rethrow.throwConsumer;
+import static io.kestra.core.utils.Rethrow.throwFunction;
+
+public abstract class BulkService {
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+    static final int PARSER_BLOCK_SIZE = 256;
+
+    /**
+     * Channel sending typed operations through the high-level client.
+     */
+    public static BulkChannel<BulkOperation> channel(ElasticsearchClient client) {
+        return new BulkChannel<>() {
+            @Override
+            public void write(OutputStream output, BulkOperation operation) throws IOException {
+                BulkService.write(output, client._jsonpMapper(), operation);
+            }
+
+            @Override
+            public Sized<BulkOperation> sized(BulkOperation operation) throws IOException {
+                // measured once the documents are encoded, then only copied
+                return BulkChannel.super.sized(encode(client._jsonpMapper(), operation));
+            }
+
+            @Override
+            public Mono<BulkResponse> send(List<BulkOperation> operations) {
+                var bulkRequest = new BulkRequest.Builder();
+                bulkRequest.operations(operations);
+
+                return WireFormatService.bulkAsync(client, bulkRequest.build());
+            }
+        };
+    }
+
+    /**
+     * Channel sending already serialized NDJSON lines as the `_bulk` request body through the low-level client; only
+     * the response is deserialized.
+     */
+    public static BulkChannel<RawOperation> rawChannel(ElasticsearchClient client) {
+        JsonpMapper mapper = client._jsonpMapper();
+
+        return new BulkChannel<>() {
+            @Override
+            public void write(OutputStream output, RawOperation operation) throws IOException {
+                output.write(operation.action());
+                output.write('\n');
+
+                if (operation.source() != null) {
+                    output.write(operation.source());
+                    output.write('\n');
+                }
+            }
+
+            @Override
+            public Sized<RawOperation> sized(RawOperation operation) {
+                return new Sized<>(operation, operation.size());
+            }
+
+            @Override
+            public Mono<BulkResponse> send(List<RawOperation> operations) {
+                return Mono
+                    .fromCallable(() ->
+                    {
+                        var body = new ByteArrayOutputStream((int) operations.stream().mapToLong(RawOperation::size).sum());
+                        for (RawOperation operation : operations) {
+                            this.write(body, operation);
+                        }
+
+                        var request = new Request("POST", "/_bulk");
+                        request.setEntity(new ByteArrayEntity(body.toByteArray(), NDJSON));
+
+                        return request;
+                    })
+                    .flatMap(request -> ElasticsearchConnection.retryAsync(
+                        client,
+                        "bulk",
+                        Mono.fromFuture(() -> ElasticsearchConnection.performRequestAsync(client, request))
+                            .publishOn(ElasticsearchConnection.scheduler(client))
+                            .map(throwFunction(response ->
+                            {
+                                try (InputStream content = response.getEntity().getContent()) {
+                                    return BulkResponse._DESERIALIZER.deserialize(mapper.jsonProvider().createParser(content), mapper);
+                                }
+                            }))
+                    ));
+            }
+        };
+    }
+
+    /**
+     * Writes the operation the same way the transport does: every serializable is flattened to its own line.
+     */
+    public static void write(OutputStream output, JsonpMapper mapper, NdJsonpSerializable value) throws IOException {
+        Iterator<?> values = value._serializables();
+
+        while (values.hasNext()) {
+            Object item = values.next();
+
+            if (item == null) {
+                continue;
+            }
+
+            if (item instanceof NdJsonpSerializable nested && item != value) {
+                write(output, mapper, nested);
+                continue;
+            }
+
+            if (item instanceof BinaryData binaryData) {
+                binaryData.writeTo(output);
+            } else {
+                try (JsonGenerator generator = mapper.jsonProvider().createGenerator(CloseShieldOutputStream.wrap(output))) {
+                    mapper.serialize(item, generator);
+                }
+            }
+
+            output.write('\n');
+        }
+    }
+
+    /**
+     * Groups operations into chunks that are flushed as soon as either {@code maxOperations} or {@code maxBytes} is
+     * reached. An operation bigger than {@code maxBytes} is sent alone in its own chunk. Operations are only measured
+     * with a {@code maxBytes}, and the ones returned by {@code sizer} are sent.
+     */
+    public static <T> Flux<List<T>> chunk(Flux<T> source, int maxOperations, Long maxBytes, Function<T, BulkChannel.Sized<T>> sizer) {
+        if (maxBytes == null) {
+            return source.buffer(maxOperations, maxOperations);
+        }
+
+        return chunk(source, () -> maxOperations, maxBytes, sizer);
+    }
+
+    /**
+     * Same as {@link #chunk(Flux, int, Long, Function)} but reads the operation limit before every operation, so it
+     * can be changed while the source is flowing.
+     */
+    public static <T> Flux<List<T>> chunk(Flux<T> source, IntSupplier maxOperations, Long maxBytes, Function<T, BulkChannel.Sized<T>> sizer) {
+        Function<T, BulkChannel.Sized<T>> operationSizer = maxBytes == null ? operation -> new BulkChannel.Sized<>(operation, 0L) : sizer;
+        long byteLimit = maxBytes == null ? Long.MAX_VALUE : maxBytes;
+
+        return Flux.defer(() ->
+        {
+            long[] current = new long[2];
+
+            return source
+                .map(operationSizer)
+                .bufferUntil(
+                    sized ->
+                    {
+                        boolean cut = current[0] > 0 && (current[0] >= maxOperations.getAsInt() || current[1] + sized.size() > byteLimit);
+                        if (cut) {
+                            current[0] = 0;
+                            current[1] = 0;
+                        }
+
+                        current[0]++;
+                        current[1] += sized.size();
+
+                        return cut;
+                    },
+                    true
+                )
+                .map(sizedList -> sizedList.stream().map(BulkChannel.Sized::operation).toList());
+        });
+    }
+
+    /**
+     * Replaces the document of an `index` or `create` operation with its JSON encoding, copied as is when the operation
+     * is written. The body of an `update` can't hold encoded documents and is left as is.
+     */
+    static BulkOperation encode(JsonpMapper mapper, BulkOperation operation) throws IOException {
+        var bulkOperation = new BulkOperation.Builder();
+
+        switch (operation._kind()) {
+            case Index -> {
+                IndexOperation<?> index = operation.index();
+                bulkOperation.index(new IndexOperation.Builder<BinaryData>()
+                    .index(index.index())
+                    .id(index.id())
+                    .routing(index.routing())
+                    .pipeline(index.pipeline())
+                    .ifPrimaryTerm(index.ifPrimaryTerm())
+                    .ifSeqNo(index.ifSeqNo())
+                    .version(index.version())
+                    .versionType(index.versionType())
+                    .requireAlias(index.requireAlias())
+                    .document(encode(mapper, index.document()))
+                    .build()
+                );
+            }
+            case Create -> {
+                CreateOperation<?> create = operation.create();
+                bulkOperation.create(new CreateOperation.Builder<BinaryData>()
+                    .index(create.index())
+                    .id(create.id())
+                    .routing(create.routing())
+                    .pipeline(create.pipeline())
+                    .ifPrimaryTerm(create.ifPrimaryTerm())
+                    .ifSeqNo(create.ifSeqNo())
+                    .version(create.version())
+                    .versionType(create.versionType())
+                    .requireAlias(create.requireAlias())
+                    .document(encode(mapper, create.document()))
+                    .build()
+                );
+            }
+            default -> {
+                return operation;
+            }
+        }
+
+        return bulkOperation.build();
+    }
+
+    private static BinaryData encode(JsonpMapper mapper, Object document) throws IOException {
+        if (document == null || document instanceof BinaryData) {
+            return (BinaryData) document;
+        }
+
+        var output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(output)) {
+            mapper.serialize(document, generator);
+        }
+
+        return BinaryData.of(output.toByteArray(), ContentType.APPLICATION_JSON.getMimeType());
+    }
+
+    /**
+     * Reads the lines of a text file, one per downstream request, skipping blank lines.
+     */
+    public static Flux<String> lines(InputStream inputStream) {
+        return Flux.generate(
+            () -> new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)),
+            (reader, sink) ->
+            {
+                try {
+                    String line;
+                    do {
+                        line = reader.readLine();
+                    } while (line != null && line.isBlank());
+
+                    if (line == null) {
+                        sink.complete();
+                    } else {
+                        sink.next(line);
+                    }
+                } catch (IOException e) {
+                    sink.error(e);
+                }
+
+                return reader;
+            },
+            throwConsumer(BufferedReader::close)
+        );
+    }
+
+    /**
+     * Decodes records on {@code threads} parser threads, in blocks of {@link #PARSER_BLOCK_SIZE} records, and emits
+     * them in the order of the input. With a single thread, records are decoded on the thread reading the input.
+     */
+    public static <R, T> Flux<T> decode(Flux<R> records, int threads, Rethrow.FunctionChecked<R, T, Exception> decoder) {
+        if (threads <= 1) {
+            return records.map(throwFunction(decoder));
+        }
+
+        return Flux.using(
+            () -> Schedulers.newParallel("elasticsearch-parser", threads),
+            scheduler -> records
+                .buffer(PARSER_BLOCK_SIZE)
+                .flatMapSequential(
+                    block -> Mono
+                        .fromCallable(() ->
+                        {
+                            List<T> decoded = new ArrayList<>(block.size());
+                            for (R record : block) {
+                                decoded.add(decoder.apply(record));
+                            }
+
+                            return decoded;
+                        })
+                        .subscribeOn(scheduler),
+                    threads
+                )
+                .flatMapIterable(Function.identity()),
+            Scheduler::dispose
+        );
+    }
+
+    /**
+     * A bulk operation kept as the raw lines read from a bulk file.
+     *
+     * @param action the action line
+     * @param source the source line, null for `delete`
+     */
+    public record RawOperation(byte[] action, byte[] source) {
+        long size() {
+            return this.action.length + 1 + (this.source != null ? this.source.length + 1 : 0);
+        }
+    }
+}
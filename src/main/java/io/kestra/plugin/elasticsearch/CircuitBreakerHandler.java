@@ -0,0 +1,311 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.runners.RunContext;
+import io.kestra.core.utils.Rethrow;
+import io.kestra.plugin.elasticsearch.model.CircuitBreakerMode;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.transport.TransportException;
+import co.elastic.clients.transport.rest5_client.low_level.ResponseException;
+
+/**
+ * Circuit breaker shared by all the clients of the worker with the same connection settings, so that the tasks stop
+ * sending requests to a struggling cluster together instead of timing out one by one.
+ * <p>
+ * The breaker opens when at least {@code failureRateThreshold} of the last {@code windowSize} requests failed: a
+ * connection error, a 429 or 5xx status, or a response slower than {@code slowCallThreshold}. While open, requests are
+ * rejected right away, or delayed until it closes with {@link CircuitBreakerMode#WAIT}. After {@code openDuration}, the
+ * breaker is half-open and lets {@code halfOpenRequests} probes through: it closes when they all succeed and opens again
+ * on the first failure.
+ * <p>
+ * Requests are guarded before they reach the low-level client, so a rejected request is never seen as a node failure
+ * that would mark the hosts dead; a request is recorded once, whatever the number of nodes the low-level client tried.
+ * The {@link Breaker} state is held by the {@link ClientCache}, one handler guards the requests of a task and logs the
+ * transitions its requests cause to the logger of the task.
+ */
+public class CircuitBreakerHandler {
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final Breaker breaker;
+    private final Logger logger;
+    private final long openedCount;
+    private final AtomicLong rejected = new AtomicLong();
+
+    CircuitBreakerHandler(Breaker breaker, Logger logger) {
+        this.breaker = breaker;
+        this.logger = logger;
+        this.openedCount = breaker.openedCount();
+    }
+
+    /**
+     * Calls the client if the breaker lets the request through, waiting for it with {@link CircuitBreakerMode#WAIT}.
+     */
+    public <T> T execute(Rethrow.SupplierChecked<T, IOException> call) throws IOException {
+        for (long wait = this.breaker.acquire(this.logger); wait > 0; wait = this.breaker.acquire(this.logger)) {
+            if (this.breaker.settings.mode() == CircuitBreakerMode.FAIL_FAST) {
+                throw this.reject(wait);
+            }
+
+            try {
+                Thread.sleep(Duration.ofNanos(wait));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the circuit breaker to be half-open");
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            this.breaker.record(this.isSlow(start), this.logger);
+
+            return result;
+        } catch (IOException | RuntimeException e) {
+            this.breaker.record(isFailure(e) || this.isSlow(start), this.logger);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #execute(Rethrow.SupplierChecked)} for an asynchronous call, waiting without blocking a thread.
+     * Cancelling the returned future cancels the call, or the wait for the breaker.
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        long wait = this.breaker.acquire(this.logger);
+
+        if (wait > 0) {
+            if (this.breaker.settings.mode() == CircuitBreakerMode.FAIL_FAST) {
+                return CompletableFuture.failedFuture(this.reject(wait));
+            }
+
+            var result = new CompletableFuture<T>();
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS).execute(() ->
+            {
+                if (!result.isDone()) {
+                    relay(this.executeAsync(call), result);
+                }
+            });
+
+            return result;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            // the permit, that may be a probe, is given back
+            this.breaker.record(isFailure(e), this.logger);
+            throw e;
+        }
+        future.whenComplete((response, throwable) ->
+            this.breaker.record((throwable != null && isFailure(throwable)) || this.isSlow(start), this.logger)
+        );
+
+        return future;
+    }
+
+    private static <T> void relay(CompletableFuture<T> from, CompletableFuture<T> to) {
+        from.whenComplete((response, throwable) ->
+        {
+            if (throwable != null) {
+                to.completeExceptionally(throwable);
+            } else {
+                to.complete(response);
+            }
+        });
+        to.whenComplete((response, throwable) ->
+        {
+            if (to.isCancelled()) {
+                from.cancel(true);
+            }
+        });
+    }
+
+    private CircuitBreakerOpenException reject(long wait) {
+        this.rejected.incrementAndGet();
+
+        return new CircuitBreakerOpenException(Duration.ofNanos(wait));
+    }
+
+    private boolean isSlow(long start) {
+        return System.nanoTime() - start > this.breaker.settings.slowCallThreshold().toNanos();
+    }
+
+    /**
+     * Whether the cluster failed the request, as opposed to a request rejected for its content.
+     */
+    static boolean isFailure(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return isFailure(throwable.getCause());
+        }
+
+        if (throwable instanceof ElasticsearchException elasticsearchException) {
+            return isServerError(elasticsearchException.status());
+        }
+
+        if (throwable instanceof ResponseException responseException) {
+            return isServerError(responseException.getResponse().getStatusCode());
+        }
+
+        if (throwable instanceof TransportException transportException && transportException.statusCode() > 0) {
+            return isServerError(transportException.statusCode());
+        }
+
+        return throwable instanceof IOException;
+    }
+
+    private static boolean isServerError(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * Emits the requests rejected by the breaker for the task, and the times it opened meanwhile.
+     */
+    public void report(RunContext runContext) {
+        runContext.metric(Counter.of("circuit.rejected", this.rejected.get()));
+        runContext.metric(Counter.of("circuit.opened", this.breaker.openedCount() - this.openedCount));
+    }
+
+    /**
+     * State of the breaker of a connection key.
+     */
+    static class Breaker {
+        private final Settings settings;
+
+        private final boolean[] window;
+        private int windowIndex;
+        private int windowCount;
+        private int windowFailures;
+
+        private State state = State.CLOSED;
+        private long openUntil;
+        private int probes;
+        private int probeSuccesses;
+
+        private final AtomicLong openedCount = new AtomicLong();
+
+        Breaker(Settings settings) {
+            this.settings = settings;
+            this.window = new boolean[settings.windowSize()];
+        }
+
+        /**
+         * @return 0 if the request can be sent, the nanoseconds to wait for the breaker to be half-open otherwise
+         */
+        synchronized long acquire(Logger logger) {
+            long now = System.nanoTime();
+
+            if (this.state == State.OPEN) {
+                if (now - this.openUntil < 0) {
+                    return this.openUntil - now;
+                }
+
+                this.transition(State.HALF_OPEN, logger);
+                this.probes = 0;
+                this.probeSuccesses = 0;
+            }
+
+            if (this.state == State.HALF_OPEN) {
+                if (this.probes >= this.settings.halfOpenRequests()) {
+                    // wait for the outcome of the probes in flight
+                    return Math.max(this.settings.openDuration().toNanos() / 10, 1);
+                }
+
+                this.probes++;
+            }
+
+            return 0;
+        }
+
+        synchronized void record(boolean failure, Logger logger) {
+            switch (this.state) {
+                case HALF_OPEN -> {
+                    if (failure) {
+                        this.open(logger);
+                    } else if (++this.probeSuccesses >= this.settings.halfOpenRequests()) {
+                        this.transition(State.CLOSED, logger);
+                        this.windowIndex = 0;
+                        this.windowCount = 0;
+                        this.windowFailures = 0;
+                    }
+                }
+                case CLOSED -> {
+                    if (this.windowCount == this.window.length) {
+                        this.windowFailures -= this.window[this.windowIndex] ? 1 : 0;
+                    } else {
+                        this.windowCount++;
+                    }
+
+                    this.window[this.windowIndex] = failure;
+                    this.windowFailures += failure ? 1 : 0;
+                    this.windowIndex = (this.windowIndex + 1) % this.window.length;
+
+                    if (this.windowCount == this.window.length && this.windowFailures >= this.settings.failureRateThreshold() * this.window.length) {
+                        this.open(logger);
+                    }
+                }
+                case OPEN -> {
+                    // outcome of a request sent before the breaker opened
+                }
+            }
+        }
+
+        private void open(Logger logger) {
+            this.transition(State.OPEN, logger);
+            this.openUntil = System.nanoTime() + this.settings.openDuration().toNanos();
+            this.openedCount.incrementAndGet();
+        }
+
+        /**
+         * Logs to the task whose request caused the transition, as the breaker is shared by tasks.
+         */
+        private void transition(State state, Logger logger) {
+            logger.warn("Elasticsearch circuit breaker goes from {} to {}", this.state, state);
+            this.state = state;
+        }
+
+        synchronized State state() {
+            return this.state;
+        }
+
+        long openedCount() {
+            return this.openedCount.get();
+        }
+    }
+
+    record Settings(
+        double failureRateThreshold,
+        Duration slowCallThreshold,
+        int windowSize,
+        Duration openDuration,
+        int halfOpenRequests,
+        CircuitBreakerMode mode
+    ) {
+    }
+
+    /**
+     * Failure of a request rejected by an open circuit breaker, without being sent.
+     */
+    public static class CircuitBreakerOpenException extends IOException {
+        public CircuitBreakerOpenException(Duration remaining) {
+            super("Elasticsearch circuit breaker is open, request rejected; it will be half-open in " + remaining);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
+
+/**
+ * Worker-wide cache of the clients shared by the tasks using `reuseClient`, so successive tasks reuse warm keep-alive
+ * connections. Clients are keyed by the rendered connection settings, including the tenant, and are reference
+ * counted: a client is closed once no task uses it for {@link #IDLE_TIMEOUT}.
+ * <p>
+ * The circuit breakers of the connections are shared the same way, whether the client is reused or not, and are
+ * dropped once no task uses them for {@link #IDLE_TIMEOUT}.
+ */
+public abstract class ClientCache {
+    static final Duration IDLE_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+    private static final Map<Object, Slot> ENTRIES = new HashMap<>();
+    private static final Map<Object, BreakerEntry> BREAKERS = new HashMap<>();
+    private static ScheduledExecutorService evictor;
+
+    /**
+     * Returns the client cached for the key, created by the factory if there is none, and counts a new reference to
+     * it that must be given back with {@link #release(Entry)}.
+     * <p>
+     * The client is created outside the lock of the cache, the tasks acquiring the same key meanwhile wait for it while
+     * the other keys are served.
+     */
+    static Entry acquire(Object key, Supplier<Entry> factory) {
+        Slot slot;
+        boolean create;
+
+        synchronized (ClientCache.class) {
+            slot = ENTRIES.get(key);
+            create = slot == null;
+            if (create) {
+                slot = new Slot();
+                ENTRIES.put(key, slot);
+            }
+
+            slot.references++;
+            startEvictor();
+        }
+
+        if (create) {
+            try {
+                Entry entry = factory.get();
+                entry.slot = slot;
+                slot.entry.complete(entry);
+            } catch (RuntimeException e) {
+                synchronized (ClientCache.class) {
+                    ENTRIES.remove(key, slot);
+                }
+
+                slot.entry.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return slot.entry.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+    }
+
+    static synchronized void release(Entry entry) {
+        entry.slot.references--;
+        entry.slot.lastRelease = System.nanoTime();
+    }
+
+    /**
+     * Returns the circuit breaker shared for the key, and counts a new reference to it that must be given back with
+     * {@link #releaseBreaker(Object)}.
+     */
+    static synchronized CircuitBreakerHandler.Breaker acquireBreaker(Object key, CircuitBreakerHandler.Settings settings) {
+        BreakerEntry entry = BREAKERS.computeIfAbsent(key, k -> new BreakerEntry(new CircuitBreakerHandler.Breaker(settings)));
+        entry.references++;
+        startEvictor();
+
+        return entry.breaker;
+    }
+
+    static synchronized void releaseBreaker(Object key) {
+        BreakerEntry entry = BREAKERS.get(key);
+        entry.references--;
+        entry.lastRelease = System.nanoTime();
+    }
+
+    private static void startEvictor() {
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "elasticsearch-client-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(
+                ClientCache::evictIdle,
+                EVICTION_INTERVAL.toMillis(),
+                EVICTION_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    static void evictIdle() {
+        List<Entry> evicted = new ArrayList<>();
+
+        synchronized (ClientCache.class) {
+            long now = System.nanoTime();
+
+            for (Iterator<Slot> iterator = ENTRIES.values().iterator(); iterator.hasNext(); ) {
+                Slot slot = iterator.next();
+
+                // a slot without references holds a created client
+                if (slot.references == 0 && now - slot.lastRelease >= IDLE_TIMEOUT.toNanos()) {
+                    iterator.remove();
+                    evicted.add(slot.entry.join());
+                }
+            }
+
+            BREAKERS.values().removeIf(entry -> entry.references == 0 && now - entry.lastRelease >= IDLE_TIMEOUT.toNanos());
+        }
+
+        for (Entry entry : evicted) {
+            try {
+                if (entry.sniffer != null) {
+                    entry.sniffer.close();
+                }
+                entry.client.close();
+            } catch (IOException ignored) {
+                // the connections are dropped anyway
+            }
+        }
+    }
+
+    static synchronized int size() {
+        return ENTRIES.size();
+    }
+
+    static synchronized int breakers() {
+        return BREAKERS.size();
+    }
+
+    /**
+     * A cached client, with the state shared by all the tasks using it.
+     */
+    static class Entry {
+        final Rest5Client client;
+        final JsonpMapper mapper;
+        final HttpMetrics metrics;
+        final NodeSniffer sniffer;
+
+        private Slot slot;
+
+        Entry(Rest5Client client, JsonpMapper mapper, HttpMetrics metrics, NodeSniffer sniffer) {
+            this.client = client;
+            this.mapper = mapper;
+            this.metrics = metrics;
+            this.sniffer = sniffer;
+        }
+    }
+
+    /**
+     * The place of a client in the cache, reserved while the client is created.
+     */
+    private static class Slot {
+        private final CompletableFuture<Entry> entry = new CompletableFuture<>();
+        private int references;
+        private long lastRelease = System.nanoTime();
+    }
+
+    private static class BreakerEntry {
+        private final CircuitBreakerHandler.Breaker breaker;
+        private int references;
+        private long lastRelease = System.nanoTime();
+
+        private BreakerEntry(CircuitBreakerHandler.Breaker breaker) {
+            this.breaker = breaker;
+        }
+    }
+}
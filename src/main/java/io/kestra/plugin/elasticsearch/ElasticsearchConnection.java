@@ -1,10 +1,16 @@
 package io.kestra.plugin.elasticsearch;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.URI;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 
 import org.apache.hc.client5.http.auth.AuthScope;
 import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
@@ -15,18 +21,35 @@ import org.apache.hc.client5.http.ssl.TrustAllStrategy;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 
 import io.kestra.core.exceptions.IllegalVariableEvaluationException;
 import io.kestra.core.models.annotations.PluginProperty;
 import io.kestra.core.models.property.Property;
 import io.kestra.core.runners.RunContext;
+import io.kestra.core.utils.Rethrow;
+import io.kestra.plugin.elasticsearch.model.CircuitBreakerMode;
+import io.kestra.plugin.elasticsearch.model.Compression;
+import io.kestra.plugin.elasticsearch.model.NodeSelection;
+import io.kestra.plugin.elasticsearch.model.XContentType;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.JsonpMapper;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
 import co.elastic.clients.transport.rest5_client.Rest5ClientOptions;
 import co.elastic.clients.transport.rest5_client.Rest5ClientTransport;
+import co.elastic.clients.transport.rest5_client.low_level.NodeSelector;
+import co.elastic.clients.transport.rest5_client.low_level.Request;
 import co.elastic.clients.transport.rest5_client.low_level.RequestOptions;
+import co.elastic.clients.transport.rest5_client.low_level.Response;
+import co.elastic.clients.transport.rest5_client.low_level.ResponseListener;
 import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotEmpty;
@@ -35,7 +58,15 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+/**
+ * Connection of the tasks to Elasticsearch. The clients it builds report the connection-level metrics of the task once
+ * closed, documented once on the `connection` property of {@link AbstractTask}: bytes, per node, per endpoint type,
+ * retries and circuit breaker.
+ */
 @SuperBuilder
 @NoArgsConstructor
 @Getter
@@ -98,6 +129,92 @@ public class ElasticsearchConnection {
     @PluginProperty(group = "advanced")
     private Property<Integer> targetServerVersion = Property.ofValue(DEFAULT_TARGET_SERVER_VERSION);
 
+    @Schema(
+        title = "HTTP compression",
+        description = "`GZIP` compresses request bodies and asks for compressed responses with `Accept-Encoding: gzip`, trading some CPU for much less bandwidth, e.g. when the cluster is reached across availability zones. " +
+            "Bytes on the wire are reported in the `bytes.sent` and `bytes.received` metrics. Default `NONE`."
+    )
+    @Builder.Default
+    @PluginProperty(group = "advanced")
+    private Property<Compression> compression = Property.ofValue(Compression.NONE);
+
+    @Schema(
+        title = "Reuse the HTTP client across task runs",
+        description = "When true, the HTTP client and its keep-alive connections are cached on the worker and shared by the tasks whose rendered connection settings are identical, within the same tenant, " +
+            "saving a TCP and TLS handshake per task; the client is closed once unused for 5 minutes. Default false creates and closes a client for every task run."
+    )
+    @Builder.Default
+    @PluginProperty(group = "advanced")
+    private Property<Boolean> reuseClient = Property.ofValue(false);
+
+    @Schema(
+        title = "Connection pool",
+        description = "Sizing of the HTTP connection pool; unset values keep the client defaults."
+    )
+    @PluginProperty(group = "advanced")
+    private Pool pool;
+
+    @Schema(
+        title = "Timeouts",
+        description = "HTTP timeouts; unset values keep the client defaults."
+    )
+    @PluginProperty(group = "advanced")
+    private Timeouts timeouts;
+
+    @Schema(
+        title = "Cluster node sniffing",
+        description = "When set, the `hosts` are only used as seeds: the HTTP nodes of the cluster are discovered with `_nodes/http` and the requests are spread over them, skipping dedicated master nodes."
+    )
+    @PluginProperty(group = "advanced")
+    private Sniffing sniffing;
+
+    @Schema(
+        title = "Node selection",
+        description = "`ROUND_ROBIN` (default) spreads the requests evenly over the nodes. `LATENCY` keeps a moving average of the latency and error rate of every node, skips the nodes much slower than the fastest one, " +
+            "and ejects the nodes timing out or failing for 30 seconds, so a node in a GC storm stops stalling the requests. Latency per node is reported in the `node.latency` metric."
+    )
+    @Builder.Default
+    @PluginProperty(group = "advanced")
+    private Property<NodeSelection> nodeSelection = Property.ofValue(NodeSelection.ROUND_ROBIN);
+
+    @Schema(
+        title = "Wire format",
+        description = "Encoding of the `_bulk`, `_search` and `_scroll` traffic: `JSON` (default), or the binary `SMILE` or `CBOR` formats, much cheaper to encode and decode than JSON for numeric-heavy documents. " +
+            "`_bulk` requests only support `SMILE` and stay in JSON with `CBOR`, as do the `passthrough` bulk requests whose lines are sent untouched. `YAML` is not supported."
+    )
+    @Builder.Default
+    @PluginProperty(group = "advanced")
+    private Property<XContentType> wireFormat = Property.ofValue(XContentType.JSON);
+
+    @Schema(
+        title = "Retry policy",
+        description = "When set, requests failing on a transient error (dropped connection, timeout or retryable status code) are retried with an exponential backoff and jitter. " +
+            "Only idempotent requests are retried: search, count, get, mget, scroll clearing and ES|QL queries and polls, plus bulk requests when `retry.bulk` is true. " +
+            "Scroll pages are not retried, as a request lost after being sent still moves the scroll cursor forward. " +
+            "Retries are reported in the `retry.count` and `retry.backoff` metrics."
+    )
+    @PluginProperty(group = "reliability")
+    private Retry retry;
+
+    @Schema(
+        title = "Use virtual threads",
+        description = "When true, the responses of the requests sent concurrently by a task (parallel bulk requests, scroll pages) are decoded and handled on virtual threads, one per response, in every `wireFormat`, " +
+            "instead of the shared parallel scheduler sized on the CPU count, so the blocking work that follows a response (writing hits or failed operations to storage) never starves the other tasks of the worker. " +
+            "Either way, these responses are never decoded on the I/O threads of the HTTP client. The requests a task sends one at a time are decoded on the task thread. Default false."
+    )
+    @Builder.Default
+    @PluginProperty(group = "advanced")
+    private Property<Boolean> virtualThreads = Property.ofValue(false);
+
+    @Schema(
+        title = "Circuit breaker",
+        description = "When set, a circuit breaker shared by all the tasks of the worker using the same connection settings stops sending requests to a struggling cluster: " +
+            "it opens when too many recent requests failed or were slow, rejects or delays the requests while open, then lets a few probe requests through before closing. " +
+            "Requests rejected by the breaker and the times it opened while a task ran are reported in the `circuit.rejected` and `circuit.opened` metrics."
+    )
+    @PluginProperty(group = "reliability")
+    private CircuitBreaker circuitBreaker;
+
     @SuperBuilder
     @NoArgsConstructor
     @Getter
@@ -117,71 +234,486 @@ public class ElasticsearchConnection {
         private Property<String> password;
     }
 
-    Rest5Client client(RunContext runContext) throws IllegalVariableEvaluationException {
-        var builder = Rest5Client.builder(this.httpHosts(runContext));
-        var defaultHeaders = this.headers != null ? this.defaultHeaders(runContext) : null;
-        var credentialsProvider = this.credentialsProvider(runContext, defaultHeaders);
+    @SuperBuilder
+    @NoArgsConstructor
+    @Getter
+    public static class Pool {
+        @Schema(
+            title = "Maximum connections",
+            description = "Maximum number of connections opened to all the hosts."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Integer> maxConnections;
+
+        @Schema(
+            title = "Maximum connections per host",
+            description = "Maximum number of connections opened to a single host; raise it with `maxInFlightRequests` on bulk loads."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Integer> maxConnectionsPerRoute;
+
+        @Schema(
+            title = "Keep-alive duration",
+            description = "How long an idle connection is kept open to be reused; idle connections are closed after this duration."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Duration> keepAlive;
+
+        @Schema(
+            title = "I/O threads",
+            description = "Number of I/O reactor threads; defaults to the number of available processors."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Integer> ioThreads;
+
+        PoolSettings render(RunContext runContext) throws IllegalVariableEvaluationException {
+            return new PoolSettings(
+                runContext.render(this.maxConnections).as(Integer.class).orElse(null),
+                runContext.render(this.maxConnectionsPerRoute).as(Integer.class).orElse(null),
+                runContext.render(this.keepAlive).as(Duration.class).orElse(null),
+                runContext.render(this.ioThreads).as(Integer.class).orElse(null)
+            );
+        }
+    }
+
+    @SuperBuilder
+    @NoArgsConstructor
+    @Getter
+    public static class CircuitBreaker {
+        @Schema(
+            title = "Failure rate threshold",
+            description = "Fraction, between 0 and 1, of failed or slow requests in the window that opens the breaker; default 0.5."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Double> failureRateThreshold = Property.ofValue(0.5);
+
+        @Schema(
+            title = "Slow call threshold",
+            description = "Requests slower than this count as failures; default 30 seconds."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Duration> slowCallThreshold = Property.ofValue(Duration.ofSeconds(30));
+
+        @Schema(
+            title = "Window size",
+            description = "Number of the most recent requests the failure rate is computed on; the breaker can't open before that many requests. Default 20."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Integer> windowSize = Property.ofValue(20);
+
+        @Schema(
+            title = "Open duration",
+            description = "How long the breaker stays open before letting probe requests through; default 30 seconds."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Duration> openDuration = Property.ofValue(Duration.ofSeconds(30));
+
+        @Schema(
+            title = "Half-open requests",
+            description = "Number of probe requests that must succeed to close the breaker again; default 3."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Integer> halfOpenRequests = Property.ofValue(3);
+
+        @Schema(
+            title = "Mode",
+            description = "`FAIL_FAST` (default) fails the requests sent while the breaker is open; `WAIT` delays them until the breaker lets them through."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<CircuitBreakerMode> mode = Property.ofValue(CircuitBreakerMode.FAIL_FAST);
+
+        CircuitBreakerHandler.Settings render(RunContext runContext) throws IllegalVariableEvaluationException {
+            var settings = new CircuitBreakerHandler.Settings(
+                runContext.render(this.failureRateThreshold).as(Double.class).orElse(0.5),
+                runContext.render(this.slowCallThreshold).as(Duration.class).orElse(Duration.ofSeconds(30)),
+                runContext.render(this.windowSize).as(Integer.class).orElse(20),
+                runContext.render(this.openDuration).as(Duration.class).orElse(Duration.ofSeconds(30)),
+                runContext.render(this.halfOpenRequests).as(Integer.class).orElse(3),
+                runContext.render(this.mode).as(CircuitBreakerMode.class).orElse(CircuitBreakerMode.FAIL_FAST)
+            );
+
+            if (settings.failureRateThreshold() <= 0 || settings.failureRateThreshold() > 1) {
+                throw new IllegalArgumentException("`circuitBreaker.failureRateThreshold` must be greater than 0 and at most 1");
+            }
+
+            if (settings.windowSize() < 1 || settings.halfOpenRequests() < 1) {
+                throw new IllegalArgumentException("`circuitBreaker.windowSize` and `circuitBreaker.halfOpenRequests` must be greater than 0");
+            }
+
+            return settings;
+        }
+    }
+
+    @SuperBuilder
+    @NoArgsConstructor
+    @Getter
+    public static class Retry {
+        @Schema(
+            title = "Maximum attempts",
+            description = "Total attempts of a request, including the first one; default 3."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Integer> maxAttempts = Property.ofValue(3);
+
+        @Schema(
+            title = "Initial backoff",
+            description = "Wait before the first retry, doubled on every following one; default 100 milliseconds."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Duration> initialBackoff = Property.ofValue(Duration.ofMillis(100));
+
+        @Schema(
+            title = "Maximum backoff",
+            description = "Upper bound of the wait between two attempts; default 10 seconds."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Duration> maxBackoff = Property.ofValue(Duration.ofSeconds(10));
+
+        @Schema(
+            title = "Jitter",
+            description = "Fraction of the backoff, between 0 and 1, randomly removed from every wait so that concurrent tasks don't retry in lockstep; default 0.5."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Double> jitter = Property.ofValue(0.5);
+
+        @Schema(
+            title = "Retryable status codes",
+            description = "HTTP status codes retried; default 429, 502, 503 and 504."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<List<Integer>> retryableStatuses = Property.ofValue(List.of(429, 502, 503, 504));
+
+        @Schema(
+            title = "Retry bulk requests",
+            description = "Also retry whole `_bulk` requests; default false. A bulk request may have been partly applied before failing, so only enable it when documents have explicit ids."
+        )
+        @Builder.Default
+        @PluginProperty(group = "reliability")
+        private Property<Boolean> bulk = Property.ofValue(false);
+
+        RetryPolicy render(RunContext runContext) throws IllegalVariableEvaluationException {
+            return RetryPolicy.builder()
+                .maxAttempts(runContext.render(this.maxAttempts).as(Integer.class).orElse(3))
+                .initialBackoff(runContext.render(this.initialBackoff).as(Duration.class).orElse(Duration.ofMillis(100)))
+                .maxBackoff(runContext.render(this.maxBackoff).as(Duration.class).orElse(Duration.ofSeconds(10)))
+                .jitter(runContext.render(this.jitter).as(Double.class).orElse(0.5))
+                .retryableStatuses(Set.copyOf(runContext.render(this.retryableStatuses).asList(Integer.class)))
+                .bulk(runContext.render(this.bulk).as(Boolean.class).orElse(false))
+                .logger(runContext.logger())
+                .build();
+        }
+    }
+
+    @SuperBuilder
+    @NoArgsConstructor
+    @Getter
+    public static class Sniffing {
+        @Schema(
+            title = "Sniffing interval",
+            description = "How often the nodes are refreshed; default 5 minutes."
+        )
+        @Builder.Default
+        @PluginProperty(group = "advanced")
+        private Property<Duration> interval = Property.ofValue(Duration.ofMinutes(5));
+
+        @Schema(
+            title = "Sniff after a failure",
+            description = "When true (default), the nodes are refreshed as soon as a node fails, at most every 10 seconds."
+        )
+        @Builder.Default
+        @PluginProperty(group = "advanced")
+        private Property<Boolean> afterFailure = Property.ofValue(true);
+
+        @Schema(
+            title = "Zone attribute",
+            description = "Node attribute holding the zone of the node, as set by `node.attr.<name>`; default `zone`."
+        )
+        @Builder.Default
+        @PluginProperty(group = "advanced")
+        private Property<String> zoneAttribute = Property.ofValue("zone");
+
+        @Schema(
+            title = "Preferred zone",
+            description = "When set, requests only go to the nodes of this zone, as long as at least one of them is available."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<String> preferredZone;
+
+        SniffingSettings render(RunContext runContext) throws IllegalVariableEvaluationException {
+            return new SniffingSettings(
+                runContext.render(this.interval).as(Duration.class).orElse(Duration.ofMinutes(5)),
+                runContext.render(this.afterFailure).as(Boolean.class).orElse(true),
+                runContext.render(this.zoneAttribute).as(String.class).orElse("zone"),
+                runContext.render(this.preferredZone).as(String.class).orElse(null)
+            );
+        }
+    }
+
+    @SuperBuilder
+    @NoArgsConstructor
+    @Getter
+    public static class Timeouts {
+        @Schema(
+            title = "Connect timeout",
+            description = "Maximum time to establish a connection."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Duration> connect;
+
+        @Schema(
+            title = "Socket timeout",
+            description = "Maximum inactivity between two packets of a connection."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Duration> socket;
+
+        @Schema(
+            title = "Response timeout",
+            description = "Maximum time to wait for a response once the request is sent; raise it for long scrolls or slow bulk requests."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Duration> response;
+
+        @Schema(
+            title = "Connection request timeout",
+            description = "Maximum time to wait for a free connection from the pool."
+        )
+        @PluginProperty(group = "advanced")
+        private Property<Duration> connectionRequest;
+
+        TimeoutSettings render(RunContext runContext) throws IllegalVariableEvaluationException {
+            return new TimeoutSettings(
+                runContext.render(this.connect).as(Duration.class).orElse(null),
+                runContext.render(this.socket).as(Duration.class).orElse(null),
+                runContext.render(this.response).as(Duration.class).orElse(null),
+                runContext.render(this.connectionRequest).as(Duration.class).orElse(null)
+            );
+        }
+    }
+
+    /**
+     * Rendered connection settings. They are also the key of the clients cached with `reuseClient`: tasks only share a
+     * client when all their settings are equal and they run in the same tenant.
+     */
+    record Settings(
+        String tenantId,
+        List<String> hosts,
+        String username,
+        String password,
+        List<String> headers,
+        String pathPrefix,
+        Boolean strictDeprecationMode,
+        boolean trustAllSsl,
+        String compatibleMediaType,
+        Compression compression,
+        PoolSettings pool,
+        TimeoutSettings timeouts,
+        SniffingSettings sniffing,
+        NodeSelection nodeSelection,
+        CircuitBreakerHandler.Settings circuitBreaker
+    ) {
+        @Override
+        public String toString() {
+            return "Settings[tenantId=" + this.tenantId + ", hosts=" + this.hosts + "]";
+        }
+    }
+
+    Settings settings(RunContext runContext) throws IllegalVariableEvaluationException {
+        var trustAllSsl = runContext.render(this.trustAllSsl).as(Boolean.class).orElse(false);
+        if (trustAllSsl) {
+            runContext.logger().warn(
+                "`trustAllSsl` is enabled: TLS certificate and hostname verification are disabled for this Elasticsearch connection. " +
+                    "This makes the connection vulnerable to man-in-the-middle attacks and should only be used with self-signed certificates in non-production environments."
+            );
+        }
+
+        return new Settings(
+            runContext.flowInfo().tenantId(),
+            runContext.render(this.hosts),
+            this.basicAuth != null ? runContext.render(this.basicAuth.username).as(String.class).orElseThrow() : null,
+            this.basicAuth != null ? runContext.render(this.basicAuth.password).as(String.class).orElseThrow() : null,
+            this.headers != null ? runContext.render(this.headers).asList(String.class) : null,
+            runContext.render(this.pathPrefix).as(String.class).orElse(null),
+            runContext.render(this.strictDeprecationMode).as(Boolean.class).orElse(null),
+            trustAllSsl,
+            this.compatibleMediaType(runContext),
+            runContext.render(this.compression).as(Compression.class).orElse(Compression.NONE),
+            this.pool != null ? this.pool.render(runContext) : new PoolSettings(null, null, null, null),
+            this.timeouts != null ? this.timeouts.render(runContext) : new TimeoutSettings(null, null, null, null),
+            this.sniffing != null ? this.sniffing.render(runContext) : null,
+            runContext.render(this.nodeSelection).as(NodeSelection.class).orElse(NodeSelection.ROUND_ROBIN),
+            this.circuitBreaker != null ? this.circuitBreaker.render(runContext) : null
+        );
+    }
+
+    record PoolSettings(Integer maxConnections, Integer maxConnectionsPerRoute, Duration keepAlive, Integer ioThreads) {
+    }
+
+    record TimeoutSettings(Duration connect, Duration socket, Duration response, Duration connectionRequest) {
+    }
+
+    record SniffingSettings(Duration interval, boolean afterFailure, String zoneAttribute, String preferredZone) {
+    }
+
+    private static CircuitBreakerHandler circuitBreaker(Settings settings, RunContext runContext) {
+        if (settings.circuitBreaker() == null) {
+            return null;
+        }
+
+        return new CircuitBreakerHandler(ClientCache.acquireBreaker(settings, settings.circuitBreaker()), runContext.logger());
+    }
+
+    private static NodeSniffer sniffer(Settings settings) {
+        if (settings.sniffing() == null) {
+            return null;
+        }
+
+        return new NodeSniffer(
+            URI.create(settings.hosts().getFirst()).getScheme(),
+            settings.sniffing().interval(),
+            settings.sniffing().afterFailure()
+        );
+    }
+
+    private static Rest5Client client(Settings settings, String version, HttpMetrics metrics, NodeSniffer sniffer) {
+        var builder = Rest5Client.builder(httpHosts(settings));
+        var defaultHeaders = settings.headers() != null ? defaultHeaders(settings) : null;
+        var credentialsProvider = credentialsProvider(settings, defaultHeaders);
+        var pool = settings.pool();
+        var timeouts = settings.timeouts();
+        var nodeHealth = settings.nodeSelection() == NodeSelection.LATENCY ? new NodeHealth() : null;
 
         builder.setHttpClientConfigCallback(httpClientBuilder ->
         {
-            httpClientBuilder.setUserAgent("Kestra/" + runContext.version());
+            httpClientBuilder.setUserAgent("Kestra/" + version);
             if (credentialsProvider != null) {
                 httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
             }
+            httpClientBuilder.addExecInterceptorLast("kestra-metrics", metrics);
+            if (nodeHealth != null) {
+                httpClientBuilder.addExecInterceptorLast("kestra-node-health", nodeHealth);
+            }
+
+            if (pool.keepAlive() != null) {
+                var keepAlive = TimeValue.of(pool.keepAlive());
+                httpClientBuilder.setKeepAliveStrategy((response, context) -> keepAlive);
+                httpClientBuilder.evictIdleConnections(keepAlive);
+            }
+
+            if (pool.ioThreads() != null) {
+                httpClientBuilder.setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(pool.ioThreads()).build());
+            }
         });
 
-        if (runContext.render(this.trustAllSsl).as(Boolean.class).orElse(false)) {
-            runContext.logger().warn(
-                "`trustAllSsl` is enabled: TLS certificate and hostname verification are disabled for this Elasticsearch connection. " +
-                    "This makes the connection vulnerable to man-in-the-middle attacks and should only be used with self-signed certificates in non-production environments."
-            );
-            try {
-                var sslContext = SSLContexts.custom()
-                    .loadTrustMaterial(null, TrustAllStrategy.INSTANCE)
-                    .build();
+        builder.setCompressionEnabled(settings.compression() == Compression.GZIP);
 
-                builder.setConnectionManagerCallback(
-                    connectionManagerBuilder -> connectionManagerBuilder.setTlsStrategy(new DefaultClientTlsStrategy(sslContext, NoopHostnameVerifier.INSTANCE))
-                );
-            } catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
-                throw new IllegalArgumentException(e);
+        var tlsStrategy = settings.trustAllSsl() ? trustAllTlsStrategy() : null;
+        builder.setConnectionManagerCallback(connectionManagerBuilder ->
+        {
+            if (tlsStrategy != null) {
+                connectionManagerBuilder.setTlsStrategy(tlsStrategy);
             }
-        }
+            if (pool.maxConnections() != null) {
+                connectionManagerBuilder.setMaxConnTotal(pool.maxConnections());
+            }
+            if (pool.maxConnectionsPerRoute() != null) {
+                connectionManagerBuilder.setMaxConnPerRoute(pool.maxConnectionsPerRoute());
+            }
+        });
+
+        builder.setConnectionConfigCallback(connectionConfigBuilder ->
+        {
+            if (timeouts.connect() != null) {
+                connectionConfigBuilder.setConnectTimeout(Timeout.of(timeouts.connect()));
+            }
+            if (timeouts.socket() != null) {
+                connectionConfigBuilder.setSocketTimeout(Timeout.of(timeouts.socket()));
+            }
+        });
+
+        builder.setRequestConfigCallback(requestConfigBuilder ->
+        {
+            if (timeouts.response() != null) {
+                requestConfigBuilder.setResponseTimeout(Timeout.of(timeouts.response()));
+            }
+            if (timeouts.connectionRequest() != null) {
+                requestConfigBuilder.setConnectionRequestTimeout(Timeout.of(timeouts.connectionRequest()));
+            }
+        });
 
         if (defaultHeaders != null) {
             builder.setDefaultHeaders(defaultHeaders);
         }
 
-        if (runContext.render(this.pathPrefix).as(String.class).isPresent()) {
-            builder.setPathPrefix(runContext.render(this.pathPrefix).as(String.class).get());
+        if (settings.pathPrefix() != null) {
+            builder.setPathPrefix(settings.pathPrefix());
+        }
+
+        if (settings.strictDeprecationMode() != null) {
+            builder.setStrictDeprecationMode(settings.strictDeprecationMode());
+        }
+
+        NodeSelector nodeSelector = NodeSelector.ANY;
+        if (sniffer != null) {
+            builder.setFailureListener(sniffer.failureListener());
+            nodeSelector = NodeSniffer.selector(settings.sniffing().zoneAttribute(), settings.sniffing().preferredZone());
+        }
+
+        if (nodeHealth != null) {
+            nodeSelector = nodeHealth.selector(nodeSelector);
         }
 
-        if (runContext.render(this.strictDeprecationMode).as(Boolean.class).isPresent()) {
-            builder.setStrictDeprecationMode(runContext.render(this.strictDeprecationMode).as(Boolean.class).get());
+        builder.setNodeSelector(nodeSelector);
+
+        var client = builder.build();
+
+        if (sniffer != null) {
+            sniffer.start(client);
         }
 
-        return builder.build();
+        return client;
     }
 
-    private BasicCredentialsProvider credentialsProvider(RunContext runContext, Header[] defaultHeaders) throws IllegalVariableEvaluationException {
-        if (this.basicAuth == null) {
+    private static TlsStrategy trustAllTlsStrategy() {
+        try {
+            var sslContext = SSLContexts.custom()
+                .loadTrustMaterial(null, TrustAllStrategy.INSTANCE)
+                .build();
+
+            return new DefaultClientTlsStrategy(sslContext, NoopHostnameVerifier.INSTANCE);
+        } catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static BasicCredentialsProvider credentialsProvider(Settings settings, Header[] defaultHeaders) {
+        if (settings.username() == null) {
             return null;
         }
-        if (this.hasAuthorizationHeader(defaultHeaders)) {
+        if (hasAuthorizationHeader(defaultHeaders)) {
             return null;
         }
 
-        var username = runContext.render(this.basicAuth.username).as(String.class).orElseThrow();
-        var password = runContext.render(this.basicAuth.password).as(String.class).orElseThrow();
         var credentialProvider = new BasicCredentialsProvider();
         credentialProvider.setCredentials(
             new AuthScope(null, null, -1, null, null),
-            new UsernamePasswordCredentials(username, password.toCharArray())
+            new UsernamePasswordCredentials(settings.username(), settings.password().toCharArray())
         );
         return credentialProvider;
     }
 
-    private boolean hasAuthorizationHeader(Header[] defaultHeaders) {
+    private static boolean hasAuthorizationHeader(Header[] defaultHeaders) {
         if (defaultHeaders == null) {
             return false;
         }
@@ -195,19 +727,308 @@ public class ElasticsearchConnection {
     }
 
     public ElasticsearchClient highLevelClient(RunContext runContext) throws IllegalVariableEvaluationException {
-        var lowLevelClient = client(runContext);
-        var compatibleMediaType = this.compatibleMediaType(runContext);
+        var settings = this.settings(runContext);
+        var wireFormat = runContext.render(this.wireFormat).as(XContentType.class).orElse(XContentType.JSON);
+        if (wireFormat == XContentType.YAML) {
+            throw new IllegalArgumentException("`wireFormat` must be one of JSON, SMILE or CBOR");
+        }
+        var retryPolicy = this.retry != null ? this.retry.render(runContext) : null;
+        var virtualThreads = runContext.render(this.virtualThreads).as(Boolean.class).orElse(false);
+        var recorder = new HttpMetrics.Recorder();
         var transportOptionsBuilder = new Rest5ClientOptions.Builder(RequestOptions.DEFAULT.toBuilder());
-        transportOptionsBuilder.setHeader(ACCEPT_HEADER, compatibleMediaType);
-        transportOptionsBuilder.setHeader(CONTENT_TYPE_HEADER, compatibleMediaType);
-        var transportOptions = transportOptionsBuilder.build();
-        var transport = new Rest5ClientTransport(lowLevelClient, new JacksonJsonpMapper(), transportOptions);
+        transportOptionsBuilder.setHeader(ACCEPT_HEADER, settings.compatibleMediaType());
+        transportOptionsBuilder.setHeader(CONTENT_TYPE_HEADER, settings.compatibleMediaType());
+
+        if (!runContext.render(this.reuseClient).as(Boolean.class).orElse(false)) {
+            var sniffer = sniffer(settings);
+            var lowLevelClient = client(settings, runContext.version(), new HttpMetrics(recorder), sniffer);
+            var scheduler = virtualThreads ? virtualThreadScheduler() : null;
+            var transport = new MeteredTransport(
+                lowLevelClient,
+                new JacksonJsonpMapper(),
+                transportOptionsBuilder.build(),
+                RequestOptions.DEFAULT,
+                wireFormat,
+                retryPolicy,
+                scheduler,
+                circuitBreaker(settings, runContext),
+                settings,
+                runContext,
+                recorder,
+                () ->
+                {
+                    if (sniffer != null) {
+                        sniffer.close();
+                    }
+                    lowLevelClient.close();
+                }
+            );
+
+            return new ElasticsearchClient(transport);
+        }
+
+        var entry = ClientCache.acquire(
+            settings,
+            () ->
+            {
+                var metrics = new HttpMetrics(new HttpMetrics.Recorder());
+                var sniffer = sniffer(settings);
+                return new ClientCache.Entry(client(settings, runContext.version(), metrics, sniffer), new JacksonJsonpMapper(), metrics, sniffer);
+            }
+        );
+        var lease = entry.metrics.lease(recorder);
+        transportOptionsBuilder.setHeader(HttpMetrics.LEASE_HEADER, lease);
+
+        var scheduler = virtualThreads ? virtualThreadScheduler() : null;
+        var transport = new MeteredTransport(
+            entry.client,
+            entry.mapper,
+            transportOptionsBuilder.build(),
+            RequestOptions.DEFAULT.toBuilder().addHeader(HttpMetrics.LEASE_HEADER, lease).build(),
+            wireFormat,
+            retryPolicy,
+            scheduler,
+            circuitBreaker(settings, runContext),
+            settings,
+            runContext,
+            recorder,
+            () ->
+            {
+                entry.metrics.release(lease);
+                ClientCache.release(entry);
+            }
+        );
 
         return new ElasticsearchClient(transport);
     }
 
-    private HttpHost[] httpHosts(RunContext runContext) throws IllegalVariableEvaluationException {
-        return runContext.render(this.hosts)
+    /**
+     * Created once the client is, as nothing disposes it if creating the client fails.
+     */
+    private static Scheduler virtualThreadScheduler() {
+        return Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "elasticsearch-virtual");
+    }
+
+    /**
+     * Sends a request with the low-level client behind a client built by {@link #highLevelClient(RunContext)}, for
+     * requests the high-level client does not cover. Headers already set on the request are kept.
+     */
+    static Response performRequest(ElasticsearchClient client, Request request) throws IOException {
+        var transport = withOptions(client, request);
+
+        if (transport.circuitBreaker == null) {
+            return transport.restClient().performRequest(request);
+        }
+
+        return transport.circuitBreaker.execute(() -> transport.restClient().performRequest(request));
+    }
+
+    /**
+     * Same as {@link #performRequest(ElasticsearchClient, Request)}, without blocking a thread while waiting for the
+     * response.
+     */
+    static CompletableFuture<Response> performRequestAsync(ElasticsearchClient client, Request request) {
+        var transport = withOptions(client, request);
+
+        if (transport.circuitBreaker == null) {
+            return performRequestAsync(transport.restClient(), request);
+        }
+
+        return transport.circuitBreaker.executeAsync(() -> performRequestAsync(transport.restClient(), request));
+    }
+
+    private static CompletableFuture<Response> performRequestAsync(Rest5Client restClient, Request request) {
+        var future = new CompletableFuture<Response>();
+
+        var cancellable = restClient.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                future.completeExceptionally(exception);
+            }
+        });
+        future.whenComplete((response, throwable) ->
+        {
+            if (future.isCancelled()) {
+                cancellable.cancel();
+            }
+        });
+
+        return future;
+    }
+
+    private static MeteredTransport withOptions(ElasticsearchClient client, Request request) {
+        var transport = (MeteredTransport) client._transport();
+        var options = transport.requestOptions.toBuilder();
+
+        // a retried request already holds the headers of the transport
+        for (var header : request.getOptions().getHeaders()) {
+            if (transport.requestOptions.getHeaders().stream().noneMatch(h -> h.getName().equalsIgnoreCase(header.getName()))) {
+                options.addHeader(header.getName(), header.getValue());
+            }
+        }
+        request.setOptions(options);
+
+        return transport;
+    }
+
+    /**
+     * The `wireFormat` of a client built by {@link #highLevelClient(RunContext)}.
+     */
+    static XContentType wireFormat(ElasticsearchClient client) {
+        return ((MeteredTransport) client._transport()).wireFormat;
+    }
+
+    /**
+     * The media type of a format (`json`, `x-ndjson`, `smile` or `cbor`) compatible with the `targetServerVersion` of a
+     * client built by {@link #highLevelClient(RunContext)}, for the requests sent in that format with the low-level client.
+     */
+    static String compatibleMediaType(ElasticsearchClient client, String format) {
+        return ((MeteredTransport) client._transport()).settings.compatibleMediaType().replace("+json", "+" + format);
+    }
+
+    /**
+     * The scheduler handling the responses of the asynchronous requests of a client built by
+     * {@link #highLevelClient(RunContext)}: virtual threads with `virtualThreads`, the parallel scheduler otherwise.
+     */
+    static Scheduler scheduler(ElasticsearchClient client) {
+        var scheduler = ((MeteredTransport) client._transport()).scheduler;
+
+        return scheduler != null ? scheduler : Schedulers.parallel();
+    }
+
+    /**
+     * Calls an endpoint with the `retry` policy of a client built by {@link #highLevelClient(RunContext)}.
+     *
+     * @param endpoint the id of the endpoint, see {@link RetryPolicy#execute(String, Rethrow.SupplierChecked)}
+     */
+    static <T> T retry(ElasticsearchClient client, String endpoint, Rethrow.SupplierChecked<T, IOException> call) throws IOException {
+        var retryPolicy = ((MeteredTransport) client._transport()).retryPolicy;
+
+        return retryPolicy != null ? retryPolicy.execute(endpoint, call) : call.get();
+    }
+
+    /**
+     * Same as {@link #retry(ElasticsearchClient, String, Rethrow.SupplierChecked)} for a call resubscribed on every
+     * attempt.
+     */
+    static <T> Mono<T> retryAsync(ElasticsearchClient client, String endpoint, Mono<T> call) {
+        var retryPolicy = ((MeteredTransport) client._transport()).retryPolicy;
+
+        return retryPolicy != null ? retryPolicy.executeAsync(endpoint, call) : call;
+    }
+
+    /**
+     * Guards the requests of the task with the circuit breaker before they reach the low-level client, reports the HTTP
+     * metrics of the task once its client is closed, and releases the low-level client: closed when owned by the task,
+     * given back to the cache when shared.
+     */
+    private static class MeteredTransport implements ElasticsearchTransport {
+        private final Rest5ClientTransport delegate;
+        private final RequestOptions requestOptions;
+        private final XContentType wireFormat;
+        private final RetryPolicy retryPolicy;
+        private final Scheduler scheduler;
+        private final CircuitBreakerHandler circuitBreaker;
+        private final Settings settings;
+        private final RunContext runContext;
+        private final HttpMetrics.Recorder recorder;
+        private final Closeable release;
+
+        private MeteredTransport(
+            Rest5Client restClient,
+            JsonpMapper mapper,
+            Rest5ClientOptions options,
+            RequestOptions requestOptions,
+            XContentType wireFormat,
+            RetryPolicy retryPolicy,
+            Scheduler scheduler,
+            CircuitBreakerHandler circuitBreaker,
+            Settings settings,
+            RunContext runContext,
+            HttpMetrics.Recorder recorder,
+            Closeable release) {
+            this.delegate = new Rest5ClientTransport(restClient, mapper, options);
+            this.requestOptions = requestOptions;
+            this.wireFormat = wireFormat;
+            this.retryPolicy = retryPolicy;
+            this.scheduler = scheduler;
+            this.circuitBreaker = circuitBreaker;
+            this.settings = settings;
+            this.runContext = runContext;
+            this.recorder = recorder;
+            this.release = release;
+        }
+
+        private Rest5Client restClient() {
+            return this.delegate.restClient();
+        }
+
+        @Override
+        public <RequestT, ResponseT, ErrorT> ResponseT performRequest(
+            RequestT request,
+            Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+            TransportOptions options
+        ) throws IOException {
+            if (this.circuitBreaker == null) {
+                return this.delegate.performRequest(request, endpoint, options);
+            }
+
+            return this.circuitBreaker.execute(() -> this.delegate.performRequest(request, endpoint, options));
+        }
+
+        @Override
+        public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(
+            RequestT request,
+            Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+            TransportOptions options
+        ) {
+            if (this.circuitBreaker == null) {
+                return this.delegate.performRequestAsync(request, endpoint, options);
+            }
+
+            return this.circuitBreaker.executeAsync(() -> this.delegate.performRequestAsync(request, endpoint, options));
+        }
+
+        @Override
+        public JsonpMapper jsonpMapper() {
+            return this.delegate.jsonpMapper();
+        }
+
+        @Override
+        public TransportOptions options() {
+            return this.delegate.options();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (this.scheduler != null) {
+                    this.scheduler.dispose();
+                }
+
+                this.release.close();
+            } finally {
+                this.recorder.report(this.runContext);
+
+                if (this.retryPolicy != null) {
+                    this.retryPolicy.report(this.runContext);
+                }
+
+                if (this.circuitBreaker != null) {
+                    this.circuitBreaker.report(this.runContext);
+                    ClientCache.releaseBreaker(this.settings);
+                }
+            }
+        }
+    }
+
+    private static HttpHost[] httpHosts(Settings settings) {
+        return settings.hosts()
             .stream()
             .map(s ->
             {
@@ -217,8 +1038,8 @@ public class ElasticsearchConnection {
             .toArray(HttpHost[]::new);
     }
 
-    private Header[] defaultHeaders(RunContext runContext) throws IllegalVariableEvaluationException {
-        return runContext.render(this.headers).asList(String.class)
+    private static Header[] defaultHeaders(Settings settings) {
+        return settings.headers()
             .stream()
             .map(header ->
             {
@@ -41,7 +41,6 @@ import co.elastic.clients.elasticsearch.esql.EsqlFormat;
 import co.elastic.clients.elasticsearch.esql.QueryRequest;
 import co.elastic.clients.json.JsonpUtils;
 import co.elastic.clients.transport.endpoints.BinaryResponse;
-import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
@@ -238,9 +237,14 @@ public class Esql extends AbstractTask implements RunnableTask<Esql.Output> {
             if (runContext.render(this.async).as(Boolean.class).orElse(false)) {
                 queryResponse = runAsyncQuery(runContext, client, queryRequest, adapter, logger);
             } else {
-                queryResponse = client
-                    .esql()
-                    .query(adapter, queryRequest);
+                var queryAdapter = adapter;
+                queryResponse = ElasticsearchConnection.retry(
+                    client,
+                    "esql.query",
+                    () -> client
+                        .esql()
+                        .query(queryAdapter, queryRequest)
+                );
             }
 
             Output.OutputBuilder outputBuilder = Esql.Output.builder();
@@ -294,34 +298,32 @@ public class Esql extends AbstractTask implements RunnableTask<Esql.Output> {
         Logger logger) throws Exception {
         String body = buildAsyncBody(JsonpUtils.toJsonString(queryRequest, client._jsonpMapper()));
 
-        try (Rest5Client lowLevel = this.connection.client(runContext)) {
-            byte[] responseBytes = submitAsyncQuery(lowLevel, body);
-            JsonNode response = JacksonMapper.ofJson().readTree(responseBytes);
-            String asyncId = response.path("id").isMissingNode() ? null : response.path("id").asText();
-
-            try {
-                while (response.path("is_running").asBoolean(false)) {
-                    if (asyncId == null) {
-                        throw new IllegalStateException("ES|QL async response is still running but did not return an id");
-                    }
-                    logger.debug("Polling ES|QL async query id={}", asyncId);
-                    responseBytes = pollAsyncQuery(lowLevel, asyncId);
-                    response = JacksonMapper.ofJson().readTree(responseBytes);
-                }
+        byte[] responseBytes = submitAsyncQuery(client, body);
+        JsonNode response = JacksonMapper.ofJson().readTree(responseBytes);
+        String asyncId = response.path("id").isMissingNode() ? null : response.path("id").asText();
 
-                return adapter.deserialize(client.esql(), queryRequest, bufferedBinaryResponse(responseBytes));
-            } finally {
-                if (asyncId != null) {
-                    deleteAsyncQuery(lowLevel, asyncId, logger);
+        try {
+            while (response.path("is_running").asBoolean(false)) {
+                if (asyncId == null) {
+                    throw new IllegalStateException("ES|QL async response is still running but did not return an id");
                 }
+                logger.debug("Polling ES|QL async query id={}", asyncId);
+                responseBytes = pollAsyncQuery(client, asyncId);
+                response = JacksonMapper.ofJson().readTree(responseBytes);
+            }
+
+            return adapter.deserialize(client.esql(), queryRequest, bufferedBinaryResponse(responseBytes));
+        } finally {
+            if (asyncId != null) {
+                deleteAsyncQuery(client, asyncId, logger);
             }
         }
     }
 
-    private byte[] submitAsyncQuery(Rest5Client lowLevel, String body) throws IOException {
+    private byte[] submitAsyncQuery(ElasticsearchClient client, String body) throws IOException {
         var request = new co.elastic.clients.transport.rest5_client.low_level.Request("POST", "_query/async");
         request.setJsonEntity(body);
-        return readBody(lowLevel.performRequest(request));
+        return readBody(ElasticsearchConnection.performRequest(client, request));
     }
 
     private static String buildAsyncBody(String queryRequestJson) throws IOException {
@@ -332,15 +334,15 @@ public class Esql extends AbstractTask implements RunnableTask<Esql.Output> {
         return mapper.writeValueAsString(body);
     }
 
-    private byte[] pollAsyncQuery(Rest5Client lowLevel, String id) throws IOException {
+    private byte[] pollAsyncQuery(ElasticsearchClient client, String id) throws IOException {
         var request = new co.elastic.clients.transport.rest5_client.low_level.Request("GET", "_query/async/" + id);
         request.addParameter("wait_for_completion_timeout", ASYNC_POLL_TIMEOUT);
-        return readBody(lowLevel.performRequest(request));
+        return ElasticsearchConnection.retry(client, "esql.async_query_get", () -> readBody(ElasticsearchConnection.performRequest(client, request)));
     }
 
-    private void deleteAsyncQuery(Rest5Client lowLevel, String id, Logger logger) {
+    private void deleteAsyncQuery(ElasticsearchClient client, String id, Logger logger) {
         try {
-            lowLevel.performRequest(new co.elastic.clients.transport.rest5_client.low_level.Request("DELETE", "_query/async/" + id));
+            ElasticsearchConnection.performRequest(client, new co.elastic.clients.transport.rest5_client.low_level.Request("DELETE", "_query/async/" + id));
         } catch (Exception e) {
             logger.warn("Failed to delete async ES|QL query {}", id, e);
         }
@@ -96,7 +96,7 @@ public class Get extends AbstractTask implements RunnableTask<Get.Output> {
                 request.routing(runContext.render(this.routing).as(String.class).orElseThrow());
             }
 
-            GetResponse<Map> response = client.get(request.build(), Map.class);
+            GetResponse<Map> response = ElasticsearchConnection.retry(client, "get", () -> client.get(request.build(), Map.class));
             logger.debug("Getting doc: {}", request);
 
             if (!response.found() && runContext.render(this.errorOnMissing).as(Boolean.class).orElse(false)) {
@@ -0,0 +1,388 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.runners.RunContext;
+
+/**
+ * Counts the body bytes exchanged with Elasticsearch, as they are on the wire: compressed when compression is enabled,
+ * the requests, errors and latency per node, and the wall-clock latency percentiles, bytes and status codes per
+ * endpoint.
+ * <p>
+ * The latency is measured from the request being sent to its response being fully received, so it includes the network
+ * and queueing time the `took` of the responses leaves out, but not the serialization on the client.
+ * <p>
+ * Registered as the last interceptor of the HTTP client execution chain, so it sees every request sent, including
+ * retries and authentication challenges. A client shared by several tasks attributes each request to the
+ * {@link Recorder} of the task that sent it, through the {@link #LEASE_HEADER} header that is removed before the
+ * request is sent.
+ */
+public class HttpMetrics implements AsyncExecChainHandler {
+    static final String LEASE_HEADER = "X-Kestra-Lease";
+
+    private final Recorder recorder;
+    private final Map<String, Recorder> leases = new ConcurrentHashMap<>();
+
+    /**
+     * @param recorder the recorder of requests without a lease
+     */
+    public HttpMetrics(Recorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Routes the requests sent with the returned lease id in {@link #LEASE_HEADER} to the recorder.
+     */
+    public String lease(Recorder recorder) {
+        String id = UUID.randomUUID().toString();
+        this.leases.put(id, recorder);
+
+        return id;
+    }
+
+    public void release(String id) {
+        this.leases.remove(id);
+    }
+
+    @Override
+    public void execute(
+        HttpRequest request,
+        AsyncEntityProducer entityProducer,
+        AsyncExecChain.Scope scope,
+        AsyncExecChain chain,
+        AsyncExecCallback asyncExecCallback) throws HttpException, IOException {
+        Recorder recorder = this.recorder(request);
+        EndpointRecorder endpoint = recorder.endpoint(endpoint(request.getMethod(), request.getPath()));
+
+        chain.proceed(
+            request,
+            entityProducer == null ? null : new CountingEntityProducer(entityProducer, recorder, endpoint),
+            scope,
+            new CountingExecCallback(asyncExecCallback, recorder.node(scope.route.getTargetHost().toURI()), endpoint)
+        );
+    }
+
+    /**
+     * The endpoint type of a request, from the first API segment of its path, e.g. `search` for `/logs/_search`.
+     */
+    static String endpoint(String method, String path) {
+        int query = path.indexOf('?');
+        String[] segments = (query >= 0 ? path.substring(0, query) : path).split("/");
+
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+
+            if (!segment.startsWith("_")) {
+                continue;
+            }
+
+            return switch (segment) {
+                case "_search" -> i + 1 < segments.length && segments[i + 1].equals("scroll") ?
+                    ("DELETE".equals(method) ? "clear_scroll" : "scroll") :
+                    "search";
+                case "_query" -> "esql";
+                case "_doc", "_create", "_update", "_source" -> switch (method) {
+                    case "GET", "HEAD" -> "get";
+                    case "DELETE" -> "delete";
+                    default -> "index";
+                };
+                default -> segment.substring(1);
+            };
+        }
+
+        return "GET".equals(method) && segments.length == 0 ? "info" : "other";
+    }
+
+    private Recorder recorder(HttpRequest request) {
+        Header lease = request.getFirstHeader(LEASE_HEADER);
+        if (lease == null) {
+            return this.recorder;
+        }
+
+        request.removeHeaders(LEASE_HEADER);
+
+        return this.leases.getOrDefault(lease.getValue(), this.recorder);
+    }
+
+    /**
+     * HTTP metrics of a task.
+     */
+    public static class Recorder {
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final Map<String, NodeRecorder> nodes = new ConcurrentHashMap<>();
+        private final Map<String, EndpointRecorder> endpoints = new ConcurrentHashMap<>();
+
+        public long bytesSent() {
+            return this.bytesSent.get();
+        }
+
+        public long bytesReceived() {
+            return this.bytesReceived.get();
+        }
+
+        NodeRecorder node(String host) {
+            return this.nodes.computeIfAbsent(host, k -> new NodeRecorder(this));
+        }
+
+        EndpointRecorder endpoint(String endpoint) {
+            return this.endpoints.computeIfAbsent(endpoint, k -> new EndpointRecorder());
+        }
+
+        /**
+         * Emits the counters of every request recorded.
+         */
+        public void report(RunContext runContext) {
+            runContext.metric(Counter.of("bytes.sent", this.bytesSent.get()));
+            runContext.metric(Counter.of("bytes.received", this.bytesReceived.get()));
+
+            this.nodes.forEach((host, node) ->
+            {
+                long requests = node.requests.get();
+                if (requests > 0) {
+                    runContext.metric(Counter.of("node.requests", requests, "host", host));
+                    runContext.metric(Counter.of("node.errors", node.errors.get(), "host", host));
+                    runContext.metric(Timer.of("node.latency", Duration.ofNanos(node.duration.get() / requests), "host", host));
+                }
+            });
+
+            this.endpoints.forEach((name, endpoint) ->
+            {
+                LatencyHistogram latency = endpoint.latency;
+                if (latency.count() > 0) {
+                    runContext.metric(Counter.of("http.requests", latency.count(), "endpoint", name));
+                    runContext.metric(Timer.of("http.duration", latency.sum(), "endpoint", name));
+                    runContext.metric(Timer.of("http.latency.p50", latency.percentile(0.5), "endpoint", name));
+                    runContext.metric(Timer.of("http.latency.p95", latency.percentile(0.95), "endpoint", name));
+                    runContext.metric(Timer.of("http.latency.p99", latency.percentile(0.99), "endpoint", name));
+                    runContext.metric(Timer.of("http.latency.max", latency.max(), "endpoint", name));
+                    runContext.metric(Counter.of("http.bytes.sent", endpoint.bytesSent.get(), "endpoint", name));
+                    runContext.metric(Counter.of("http.bytes.received", endpoint.bytesReceived.get(), "endpoint", name));
+                }
+
+                endpoint.statuses.forEach((status, count) ->
+                    runContext.metric(Counter.of("http.status", count.get(), "endpoint", name, "status", status))
+                );
+            });
+        }
+    }
+
+    /**
+     * Requests sent by a task to an endpoint type: latency, bytes and count per status code, `error` for the requests
+     * that got no response.
+     */
+    static class EndpointRecorder {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final Map<String, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        private void record(long start, String status) {
+            this.latency.record(System.nanoTime() - start);
+            this.statuses.computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Requests sent by a task to a node: count, errors and cumulated latency.
+     */
+    static class NodeRecorder {
+        private final Recorder recorder;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong duration = new AtomicLong();
+
+        private NodeRecorder(Recorder recorder) {
+            this.recorder = recorder;
+        }
+
+        private void record(long start, boolean error) {
+            this.requests.incrementAndGet();
+            this.duration.addAndGet(System.nanoTime() - start);
+
+            if (error) {
+                this.errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static class CountingEntityProducer implements AsyncEntityProducer {
+        private final AsyncEntityProducer delegate;
+        private final Recorder recorder;
+        private final EndpointRecorder endpoint;
+
+        private CountingEntityProducer(AsyncEntityProducer delegate, Recorder recorder, EndpointRecorder endpoint) {
+            this.delegate = delegate;
+            this.recorder = recorder;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return this.delegate.isRepeatable();
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            this.delegate.failed(cause);
+        }
+
+        @Override
+        public long getContentLength() {
+            return this.delegate.getContentLength();
+        }
+
+        @Override
+        public String getContentType() {
+            return this.delegate.getContentType();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return this.delegate.getContentEncoding();
+        }
+
+        @Override
+        public boolean isChunked() {
+            return this.delegate.isChunked();
+        }
+
+        @Override
+        public Set<String> getTrailerNames() {
+            return this.delegate.getTrailerNames();
+        }
+
+        @Override
+        public int available() {
+            return this.delegate.available();
+        }
+
+        @Override
+        public void produce(DataStreamChannel channel) throws IOException {
+            this.delegate.produce(new DataStreamChannel() {
+                @Override
+                public void requestOutput() {
+                    channel.requestOutput();
+                }
+
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    int written = channel.write(src);
+                    recorder.bytesSent.addAndGet(written);
+                    endpoint.bytesSent.addAndGet(written);
+
+                    return written;
+                }
+
+                @Override
+                public void endStream(List<? extends Header> trailers) throws IOException {
+                    channel.endStream(trailers);
+                }
+
+                @Override
+                public void endStream() throws IOException {
+                    channel.endStream();
+                }
+            });
+        }
+
+        @Override
+        public void releaseResources() {
+            this.delegate.releaseResources();
+        }
+    }
+
+    private static class CountingExecCallback implements AsyncExecCallback {
+        private final AsyncExecCallback delegate;
+        private final Recorder recorder;
+        private final NodeRecorder node;
+        private final EndpointRecorder endpoint;
+        private final long start = System.nanoTime();
+        private boolean serverError;
+        private int status;
+
+        private CountingExecCallback(AsyncExecCallback delegate, NodeRecorder node, EndpointRecorder endpoint) {
+            this.delegate = delegate;
+            this.recorder = node.recorder;
+            this.node = node;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public AsyncDataConsumer handleResponse(HttpResponse response, EntityDetails entityDetails) throws HttpException, IOException {
+            this.serverError = response.getCode() >= 500;
+            this.status = response.getCode();
+            AsyncDataConsumer consumer = this.delegate.handleResponse(response, entityDetails);
+
+            if (consumer == null) {
+                return null;
+            }
+
+            return new AsyncDataConsumer() {
+                @Override
+                public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+                    consumer.updateCapacity(capacityChannel);
+                }
+
+                @Override
+                public void consume(ByteBuffer src) throws IOException {
+                    recorder.bytesReceived.addAndGet(src.remaining());
+                    endpoint.bytesReceived.addAndGet(src.remaining());
+                    consumer.consume(src);
+                }
+
+                @Override
+                public void streamEnd(List<? extends Header> trailers) throws HttpException, IOException {
+                    consumer.streamEnd(trailers);
+                }
+
+                @Override
+                public void releaseResources() {
+                    consumer.releaseResources();
+                }
+            };
+        }
+
+        @Override
+        public void handleInformationResponse(HttpResponse response) throws HttpException, IOException {
+            this.delegate.handleInformationResponse(response);
+        }
+
+        @Override
+        public void completed() {
+            this.node.record(this.start, this.serverError);
+            this.endpoint.record(this.start, String.valueOf(this.status));
+            this.delegate.completed();
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            this.node.record(this.start, true);
+            this.endpoint.record(this.start, "error");
+            this.delegate.failed(cause);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.kestra.core.serializers.JacksonMapper;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpDeserializerBase;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpParser;
+import jakarta.json.stream.JsonParser;
+
+/**
+ * The `_source` of a hit, transcoded to Ion straight from the tokens of the response parser, in JSON, SMILE or CBOR,
+ * without building a {@link Map} of the document to serialize it again.
+ * <p>
+ * Hits are stored as one Ion value per line, as {@link io.kestra.core.serializers.FileSerde} does.
+ */
+public final class IonSource {
+    private static final ObjectMapper ION_MAPPER = JacksonMapper.ofIon();
+
+    private final byte[] ion;
+
+    private IonSource(byte[] ion) {
+        this.ion = ion;
+    }
+
+    /**
+     * A deserializer for the hits of one response: its Ion generator and buffer are reused for all the documents of the
+     * response, and released with it rather than kept by the thread that decoded it.
+     */
+    public static JsonpDeserializer<IonSource> deserializer() {
+        return new JsonpDeserializerBase<>(EnumSet.of(JsonParser.Event.START_OBJECT)) {
+            private Transcoder transcoder;
+
+            @Override
+            public IonSource deserialize(JsonParser parser, JsonpMapper mapper, JsonParser.Event event) {
+                try {
+                    if (this.transcoder == null) {
+                        this.transcoder = new Transcoder();
+                    }
+
+                    return new IonSource(this.transcoder.transcode(parser, mapper, event));
+                } catch (IOException | RuntimeException e) {
+                    // a retried request starts again from a clean generator
+                    this.transcoder = null;
+
+                    throw e instanceof IOException ioException ? new UncheckedIOException(ioException) : (RuntimeException) e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes the `_source` of the hits, skipping the hits without one.
+     *
+     * @return the count of sources written
+     */
+    public static long writeAll(OutputStream output, Iterable<Hit<IonSource>> hits) throws IOException {
+        long count = 0;
+
+        for (Hit<IonSource> hit : hits) {
+            if (hit.source() != null) {
+                output.write(hit.source().ion);
+                output.write('\n');
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * An Ion generator reused for all the documents of a response, writing to a buffer emptied after each one.
+     */
+    private static class Transcoder {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final JsonGenerator generator;
+
+        private Transcoder() {
+            try {
+                this.generator = ION_MAPPER.getFactory().createGenerator(this.buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] transcode(JsonParser parser, JsonpMapper mapper, JsonParser.Event event) throws IOException {
+            if (parser instanceof JacksonJsonpParser jacksonJsonpParser) {
+                // the Jackson parser is on the start of the object, and left on its end for the hit parser to go on
+                this.generator.copyCurrentStructure(jacksonJsonpParser.jacksonParser());
+            } else {
+                ION_MAPPER.writeValue(this.generator, JsonpDeserializer.of(Map.class).deserialize(parser, mapper, event));
+            }
+
+            this.generator.flush();
+            byte[] ion = this.buffer.toByteArray();
+            this.buffer.reset();
+
+            return ion;
+        }
+    }
+}
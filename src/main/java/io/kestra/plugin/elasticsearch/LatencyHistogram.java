@@ -0,0 +1,69 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies, with logarithmic buckets from 1 microsecond to about an hour, so percentiles are
+ * reported within {@link #PRECISION} of the recorded values without keeping them all.
+ */
+class LatencyHistogram {
+    static final double PRECISION = 0.1;
+
+    private static final double LOG_BASE = Math.log1p(PRECISION);
+    private static final int BUCKETS = 256;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = Math.max(nanos / 1_000, 1);
+        int bucket = (int) Math.min(Math.log(micros) / LOG_BASE, BUCKETS - 1);
+
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        this.sum.addAndGet(nanos);
+        this.max.accumulateAndGet(nanos, Math::max);
+    }
+
+    long count() {
+        return this.count.get();
+    }
+
+    Duration sum() {
+        return Duration.ofNanos(this.sum.get());
+    }
+
+    Duration max() {
+        return Duration.ofNanos(this.max.get());
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the upper bound of the bucket holding the percentile, capped to the max recorded
+     */
+    Duration percentile(double percentile) {
+        long count = this.count.get();
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+
+        long rank = Math.max((long) Math.ceil(percentile * count), 1);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += this.buckets.get(bucket);
+
+            if (seen >= rank) {
+                long upperBound = (long) (Math.exp((bucket + 1) * LOG_BASE) * 1_000);
+
+                return Duration.ofNanos(Math.min(upperBound, this.max.get()));
+            }
+        }
+
+        return this.max();
+    }
+}
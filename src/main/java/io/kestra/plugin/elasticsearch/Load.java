@@ -4,6 +4,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+
 import io.kestra.core.exceptions.IllegalVariableEvaluationException;
 import io.kestra.core.models.annotations.Example;
 import io.kestra.core.models.annotations.Metric;
@@ -15,12 +19,16 @@ import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.RunnableTask;
 import io.kestra.core.runners.RunContext;
 import io.kestra.core.serializers.FileSerde;
+import io.kestra.core.serializers.JacksonMapper;
 import io.kestra.plugin.elasticsearch.model.OpType;
 
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.CreateOperation;
+import co.elastic.clients.elasticsearch.core.bulk.DeleteOperation;
 import co.elastic.clients.elasticsearch.core.bulk.IndexOperation;
+import co.elastic.clients.elasticsearch.core.bulk.UpdateAction;
+import co.elastic.clients.elasticsearch.core.bulk.UpdateOperation;
 import io.swagger.v3.oas.annotations.media.Schema;
-import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import reactor.core.publisher.Flux;
@@ -40,7 +48,13 @@ import static io.kestra.core.utils.Rethrow.throwFunction;
     metrics = {
         @Metric(name = "requests.count", type = Counter.TYPE, description = "Number of bulk requests sent"),
         @Metric(name = "records", type = Counter.TYPE, unit = "records", description = "Number of records loaded"),
-        @Metric(name = "requests.duration", type = Timer.TYPE, description = "Duration of bulk requests")
+        @Metric(name = "requests.duration", type = Timer.TYPE, description = "Duration of bulk requests"),
+        @Metric(name = "requests.concurrency", type = Counter.TYPE, description = "Highest number of bulk requests in flight at once"),
+        @Metric(name = "retried.count", type = Counter.TYPE, description = "Number of operations resubmitted after a retryable failure"),
+        @Metric(name = "failed.count", type = Counter.TYPE, description = "Number of operations written to the dead-letter file"),
+        @Metric(name = "chunk.size", type = Counter.TYPE, description = "Chunk size reached by the adaptive controller at the end of the load, only with `adaptive`"),
+        @Metric(name = "rejected.count", type = Counter.TYPE, description = "Number of bulk requests rejected by the cluster, only with `adaptive`"),
+        @Metric(name = "backoff.duration", type = Timer.TYPE, description = "Time spent backing off after rejections, only with `adaptive`")
     },
     examples = {
         @Example(
@@ -66,17 +80,30 @@ import static io.kestra.core.utils.Rethrow.throwFunction;
     }
 )
 public class Load extends AbstractLoad implements RunnableTask<Load.Output> {
+    private static final ObjectReader ION_LINE_READER = JacksonMapper.ofIon()
+        .readerFor(Object.class)
+        .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
 
     @Schema(
-        title = "The elasticsearch index"
+        title = "The elasticsearch index",
+        description = "Rendered once per run; required unless `indexExpression` is set."
     )
-    @NotNull
     @PluginProperty(group = "main")
     private Property<String> index;
 
+    @Schema(
+        title = "Per-record index expression",
+        description = "Pebble expression rendered for every record, with the record fields available as `row`, e.g. `logs-{{ row.date | date('yyyy.MM.dd') }}`. " +
+            "Takes precedence over `index`; only use it for dynamic routing, as rendering every record is much slower than a static index."
+    )
+    @PluginProperty(group = "main")
+    private Property<String> indexExpression;
+
     @Schema(
         title = "Operation type",
-        description = "Intended bulk op type; currently only index is applied."
+        description = "Bulk operation sent for every record, default `INDEX`. `CREATE` rejects documents whose id already exists, " +
+            "`UPDATE` sends a partial document upserted with `doc_as_upsert`, and `DELETE` removes the document; `UPDATE` and `DELETE` require `idKey`. " +
+            "Rejected operations are written to the `failedUri` file."
     )
     @PluginProperty(group = "advanced")
     private Property<OpType> opType;
@@ -99,36 +126,99 @@ public class Load extends AbstractLoad implements RunnableTask<Load.Output> {
     @SuppressWarnings("unchecked")
     @Override
     protected Flux<BulkOperation> source(RunContext runContext, InputStream inputStream) throws IllegalVariableEvaluationException, IOException {
-        return FileSerde.readAll(inputStream)
+        String index = runContext.render(this.index).as(String.class).orElse(null);
+        if (index == null && this.indexExpression == null) {
+            throw new IllegalArgumentException("One of `index` or `indexExpression` must be set");
+        }
+
+        String idKey = runContext.render(this.idKey).as(String.class).orElse(null);
+        boolean removeIdKey = runContext.render(this.removeIdKey).as(Boolean.class).orElse(true);
+
+        OpType opType = runContext.render(this.opType).as(OpType.class).orElse(OpType.INDEX);
+        if ((opType == OpType.UPDATE || opType == OpType.DELETE) && idKey == null) {
+            throw new IllegalArgumentException("`idKey` is required with the `" + opType + "` operation type");
+        }
+
+        int parserThreads = this.parserThreads(runContext);
+        Flux<Object> records = parserThreads > 1 ?
+            BulkService.decode(BulkService.lines(inputStream), parserThreads, Load::readLine) :
+            FileSerde.readAll(inputStream);
+
+        return records
             .map(throwFunction(o ->
             {
                 Map<String, ?> values = (Map<String, ?>) o;
 
-                var indexRequest = new IndexOperation.Builder<Map<String, ?>>();
-                if (this.index != null) {
-                    indexRequest.index(runContext.render(this.getIndex()).as(String.class).orElseThrow());
+                String recordIndex = index;
+                if (this.indexExpression != null) {
+                    // rendered again for every record, with its own variables
+                    recordIndex = runContext.render(this.indexExpression)
+                        .skipCache()
+                        .as(String.class, Map.of("row", values))
+                        .orElseThrow();
                 }
 
-                //FIXME
-                //                if (this.opType != null) {
-                //                    indexRequest.opType(this.opType.to());
-                //                }
-
-                if (this.idKey != null) {
-                    String idKey = runContext.render(this.idKey).as(String.class).orElseThrow();
+                String id = null;
+                if (idKey != null) {
+                    id = values.get(idKey).toString();
 
-                    indexRequest.id(values.get(idKey).toString());
-
-                    if (runContext.render(this.removeIdKey).as(Boolean.class).orElse(true)) {
+                    if (removeIdKey) {
                         values.remove(idKey);
                     }
                 }
 
-                indexRequest.document(values);
-
-                var bulkOperation = new BulkOperation.Builder();
-                bulkOperation.index(indexRequest.build());
-                return bulkOperation.build();
+                return operation(opType, recordIndex, id, values);
             }));
     }
+
+    /**
+     * Decodes a line of the input on a parser thread, failing instead of loading part of a line that is not exactly one
+     * Ion value.
+     */
+    private static Object readLine(String line) {
+        try {
+            return ION_LINE_READER.readValue(line);
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("With `parserThreads`, every line of the input must hold exactly one Ion value, invalid line '" + line + "'", e);
+        }
+    }
+
+    private static BulkOperation operation(OpType opType, String index, String id, Map<String, ?> values) {
+        var bulkOperation = new BulkOperation.Builder();
+
+        switch (opType) {
+            case INDEX -> {
+                var indexOperation = new IndexOperation.Builder<Map<String, ?>>()
+                    .index(index)
+                    .id(id)
+                    .document(values);
+                bulkOperation.index(indexOperation.build());
+            }
+            case CREATE -> {
+                var createOperation = new CreateOperation.Builder<Map<String, ?>>()
+                    .index(index)
+                    .id(id)
+                    .document(values);
+                bulkOperation.create(createOperation.build());
+            }
+            case UPDATE -> {
+                var updateAction = new UpdateAction.Builder<Map<String, ?>, Map<String, ?>>()
+                    .doc(values)
+                    .docAsUpsert(true);
+                var updateOperation = new UpdateOperation.Builder<Map<String, ?>, Map<String, ?>>()
+                    .index(index)
+                    .id(id)
+                    .action(updateAction.build());
+                bulkOperation.update(updateOperation.build());
+            }
+            case DELETE -> {
+                var deleteOperation = new DeleteOperation.Builder()
+                    .index(index)
+                    .id(id);
+                bulkOperation.delete(deleteOperation.build());
+            }
+        }
+
+        return bulkOperation.build();
+    }
 }
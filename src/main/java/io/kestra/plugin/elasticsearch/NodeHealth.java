@@ -0,0 +1,193 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+
+import co.elastic.clients.transport.rest5_client.low_level.Node;
+import co.elastic.clients.transport.rest5_client.low_level.NodeSelector;
+
+/**
+ * Scores every node of a client with an exponentially weighted moving average of its latency and error rate, and
+ * selects the fastest healthy nodes.
+ * <p>
+ * A node timing out, or failing most of its recent requests, is ejected for {@link #EJECTION} and a node much slower
+ * than the fastest one is skipped, as long as some nodes are left to send the request to. The low-level client still
+ * round-robins over the nodes selected and retries on the other ones.
+ * <p>
+ * Latencies are averaged per endpoint type, as classified by {@link HttpMetrics#endpoint(String, String)}, and nodes
+ * are only compared on the same endpoint types: a node that served a slow `_bulk` is not slower than one that only
+ * served searches.
+ */
+public class NodeHealth implements AsyncExecChainHandler {
+    static final double ALPHA = 0.3;
+    static final double MAX_ERROR_RATE = 0.5;
+    static final double MAX_LATENCY_RATIO = 3;
+    static final Duration EJECTION = Duration.ofSeconds(30);
+
+    private final Map<String, Score> scores = new ConcurrentHashMap<>();
+
+    @Override
+    public void execute(
+        HttpRequest request,
+        AsyncEntityProducer entityProducer,
+        AsyncExecChain.Scope scope,
+        AsyncExecChain chain,
+        AsyncExecCallback asyncExecCallback) throws HttpException, IOException {
+        Score score = this.score(scope.route.getTargetHost());
+        String endpoint = HttpMetrics.endpoint(request.getMethod(), request.getPath());
+        long start = System.nanoTime();
+
+        chain.proceed(request, entityProducer, scope, new AsyncExecCallback() {
+            private boolean serverError;
+
+            @Override
+            public AsyncDataConsumer handleResponse(HttpResponse response, EntityDetails entityDetails) throws HttpException, IOException {
+                this.serverError = response.getCode() >= 500;
+
+                return asyncExecCallback.handleResponse(response, entityDetails);
+            }
+
+            @Override
+            public void handleInformationResponse(HttpResponse response) throws HttpException, IOException {
+                asyncExecCallback.handleInformationResponse(response);
+            }
+
+            @Override
+            public void completed() {
+                score.record(endpoint, System.nanoTime() - start, this.serverError, false);
+                asyncExecCallback.completed();
+            }
+
+            @Override
+            public void failed(Exception cause) {
+                score.record(endpoint, System.nanoTime() - start, true, cause instanceof InterruptedIOException);
+                asyncExecCallback.failed(cause);
+            }
+        });
+    }
+
+    Score score(HttpHost host) {
+        return this.scores.computeIfAbsent(key(host), k -> new Score());
+    }
+
+    private static String key(HttpHost host) {
+        return host.getSchemeName() + "://" + host.getHostName().toLowerCase() + ":" + host.getPort();
+    }
+
+    /**
+     * Applies the delegate selector, then removes the unhealthy and slow nodes unless no node would be left.
+     * <p>
+     * The scores keep changing while requests complete, so every node is only read once, and the nodes are compared on
+     * that snapshot.
+     */
+    public NodeSelector selector(NodeSelector delegate) {
+        return nodes ->
+        {
+            delegate.select(nodes);
+
+            long now = System.nanoTime();
+            Map<Node, Snapshot> snapshots = new IdentityHashMap<>();
+            Map<String, Double> fastest = new HashMap<>();
+            boolean hasHealthy = false;
+
+            for (Node node : nodes) {
+                Score score = this.scores.get(key(node.getHost()));
+                // nodes without score yet are kept, so they get requests to be scored
+                Snapshot snapshot = score != null ? score.snapshot(now) : new Snapshot(true, Map.of());
+                snapshots.put(node, snapshot);
+
+                if (snapshot.healthy()) {
+                    hasHealthy = true;
+                    snapshot.latencies().forEach((endpoint, latency) -> fastest.merge(endpoint, latency, Math::min));
+                }
+            }
+
+            if (!hasHealthy) {
+                return;
+            }
+
+            for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext(); ) {
+                Snapshot snapshot = snapshots.get(iterator.next());
+
+                if (!snapshot.healthy() || isSlow(snapshot, fastest)) {
+                    iterator.remove();
+                }
+            }
+        };
+    }
+
+    private static boolean isSlow(Snapshot snapshot, Map<String, Double> fastest) {
+        for (Map.Entry<String, Double> latency : snapshot.latencies().entrySet()) {
+            Double fastestLatency = fastest.get(latency.getKey());
+
+            // only healthy nodes set the fastest latencies
+            if (fastestLatency != null && latency.getValue() > fastestLatency * MAX_LATENCY_RATIO) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Health and latencies of a node read together.
+     */
+    record Snapshot(boolean healthy, Map<String, Double> latencies) {
+    }
+
+    static class Score {
+        private final Map<String, Double> latencies = new HashMap<>();
+        private double errorRate;
+        private boolean ejected;
+        private long ejectedUntil;
+
+        synchronized void record(String endpoint, long latencyNanos, boolean error, boolean timeout) {
+            this.latencies.merge(endpoint, (double) latencyNanos, (average, latency) -> ALPHA * latency + (1 - ALPHA) * average);
+            this.errorRate = ALPHA * (error ? 1 : 0) + (1 - ALPHA) * this.errorRate;
+
+            if (timeout || this.errorRate > MAX_ERROR_RATE) {
+                this.ejected = true;
+                this.ejectedUntil = System.nanoTime() + EJECTION.toNanos();
+                // give the node a fresh start once the ejection is over
+                this.latencies.clear();
+                this.errorRate = 0;
+            }
+        }
+
+        /**
+         * @return the average latency in nanoseconds of the endpoint types the node served
+         */
+        synchronized Map<String, Double> latencies() {
+            return Map.copyOf(this.latencies);
+        }
+
+        synchronized Snapshot snapshot(long now) {
+            return new Snapshot(this.isHealthy(now), Map.copyOf(this.latencies));
+        }
+
+        synchronized double errorRate() {
+            return this.errorRate;
+        }
+
+        synchronized boolean isHealthy(long now) {
+            return !this.ejected || now - this.ejectedUntil >= 0;
+        }
+    }
+}
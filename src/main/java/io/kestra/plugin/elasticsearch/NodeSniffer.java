@@ -0,0 +1,233 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.kestra.core.serializers.JacksonMapper;
+
+import co.elastic.clients.transport.rest5_client.low_level.Node;
+import co.elastic.clients.transport.rest5_client.low_level.NodeSelector;
+import co.elastic.clients.transport.rest5_client.low_level.Request;
+import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
+
+/**
+ * Replaces the configured hosts of a client by the HTTP-enabled nodes of the cluster, read from `_nodes/http`, so the
+ * requests are spread over the whole cluster instead of the few seed nodes or the load balancer configured.
+ * <p>
+ * Nodes are sniffed when the client starts, then every {@code interval}, and right after a node failed when
+ * {@code afterFailure} is set. A failed sniff keeps the current nodes.
+ */
+public class NodeSniffer implements Closeable {
+    static final Duration MIN_FAILURE_INTERVAL = Duration.ofSeconds(10);
+    private static final Logger logger = LoggerFactory.getLogger(NodeSniffer.class);
+
+    private final String scheme;
+    private final Duration interval;
+    private final boolean afterFailure;
+    private final ScheduledExecutorService executor;
+
+    private Rest5Client client;
+    private ScheduledFuture<?> next;
+    private long lastSniff;
+    private boolean closed;
+
+    public NodeSniffer(String scheme, Duration interval, boolean afterFailure) {
+        this.scheme = scheme;
+        this.interval = interval;
+        this.afterFailure = afterFailure;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "elasticsearch-sniffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start(Rest5Client client) {
+        this.client = client;
+        this.schedule(Duration.ZERO);
+    }
+
+    /**
+     * Failure listener of the client, sniffing again right away unless a sniff just happened.
+     */
+    public Rest5Client.FailureListener failureListener() {
+        return new Rest5Client.FailureListener() {
+            @Override
+            public void onFailure(Node node) {
+                NodeSniffer.this.onFailure(node);
+            }
+        };
+    }
+
+    synchronized void onFailure(Node node) {
+        if (this.afterFailure && this.client != null && System.nanoTime() - this.lastSniff >= MIN_FAILURE_INTERVAL.toNanos()) {
+            logger.debug("Sniffing nodes after failure of {}", node);
+            this.schedule(Duration.ZERO);
+        }
+    }
+
+    private synchronized void schedule(Duration delay) {
+        if (this.closed) {
+            return;
+        }
+
+        if (this.next != null) {
+            this.next.cancel(false);
+        }
+
+        this.next = this.executor.schedule(this::sniff, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void sniff() {
+        try {
+            synchronized (this) {
+                this.lastSniff = System.nanoTime();
+            }
+
+            List<Node> nodes = this.sniffNodes();
+            if (!nodes.isEmpty()) {
+                this.client.setNodes(nodes);
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to sniff Elasticsearch nodes, keeping the current nodes", e);
+        } finally {
+            this.schedule(this.interval);
+        }
+    }
+
+    List<Node> sniffNodes() throws IOException {
+        var request = new Request("GET", "/_nodes/http");
+        request.addParameter("timeout", "5s");
+
+        var response = this.client.performRequest(request);
+
+        try (InputStream content = response.getEntity().getContent()) {
+            return parse(this.scheme, JacksonMapper.ofJson().readTree(content));
+        }
+    }
+
+    static List<Node> parse(String scheme, JsonNode response) {
+        List<Node> nodes = new ArrayList<>();
+
+        for (Iterator<Map.Entry<String, JsonNode>> iterator = response.path("nodes").fields(); iterator.hasNext(); ) {
+            JsonNode node = iterator.next().getValue();
+
+            // nodes with HTTP disabled don't expose a publish address
+            String publishAddress = node.path("http").path("publish_address").asText(null);
+            if (publishAddress == null) {
+                continue;
+            }
+
+            Set<String> roles = new HashSet<>();
+            node.path("roles").forEach(role -> roles.add(role.asText()));
+
+            Map<String, List<String>> attributes = new LinkedHashMap<>();
+            node.path("attributes").fields().forEachRemaining(attribute -> attributes.put(attribute.getKey(), List.of(attribute.getValue().asText())));
+
+            nodes.add(new Node(
+                httpHost(scheme, publishAddress),
+                null,
+                node.path("name").asText(null),
+                node.path("version").asText(null),
+                new Node.Roles(roles),
+                attributes
+            ));
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Reads a publish address, either `ip:port` or `hostname/ip:port` when the node has a hostname.
+     */
+    static HttpHost httpHost(String scheme, String publishAddress) {
+        int portSeparator = publishAddress.lastIndexOf(':');
+        int port = Integer.parseInt(publishAddress.substring(portSeparator + 1));
+
+        String host = publishAddress.substring(0, portSeparator);
+        int hostSeparator = host.indexOf('/');
+        if (hostSeparator > 0) {
+            host = host.substring(0, hostSeparator);
+        } else if (hostSeparator == 0) {
+            host = host.substring(1);
+        }
+
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+
+        return new HttpHost(scheme, host, port);
+    }
+
+    /**
+     * Skips the dedicated master nodes, and keeps only the nodes of the preferred zone when there are some.
+     */
+    public static NodeSelector selector(String zoneAttribute, String preferredZone) {
+        return nodes ->
+        {
+            boolean hasNonMaster = false;
+            boolean hasPreferredZone = false;
+
+            for (Node node : nodes) {
+                hasNonMaster = hasNonMaster || !isDedicatedMaster(node);
+                hasPreferredZone = hasPreferredZone || isInZone(node, zoneAttribute, preferredZone);
+            }
+
+            for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext(); ) {
+                Node node = iterator.next();
+
+                if ((hasNonMaster && isDedicatedMaster(node)) || (hasPreferredZone && !isInZone(node, zoneAttribute, preferredZone))) {
+                    iterator.remove();
+                }
+            }
+        };
+    }
+
+    private static boolean isDedicatedMaster(Node node) {
+        return node.getRoles() != null &&
+            node.getRoles().isMasterEligible() &&
+            !node.getRoles().isData() &&
+            !node.getRoles().isIngest();
+    }
+
+    private static boolean isInZone(Node node, String zoneAttribute, String zone) {
+        if (zone == null || node.getAttributes() == null) {
+            return false;
+        }
+
+        List<String> values = node.getAttributes().get(zoneAttribute);
+
+        return values != null && values.contains(zone);
+    }
+
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+
+        if (this.next != null) {
+            this.next.cancel(false);
+        }
+
+        this.executor.shutdownNow();
+    }
+}
@@ -16,19 +16,25 @@ import co.elastic.clients.elasticsearch.core.SearchRequest;
 public abstract class QueryService {
     private static ObjectMapper MAPPER = JacksonMapper.ofJson();
 
-    @SuppressWarnings("rawtypes")
     public static SearchRequest.Builder request(RunContext runContext, Object request) throws IllegalVariableEvaluationException, IOException {
+        return parseQuery(render(runContext, request));
+    }
+
+    /**
+     * Renders the request as a JSON string, to {@link #parseQuery(String) parse} it once for every request sent.
+     */
+    @SuppressWarnings("rawtypes")
+    public static String render(RunContext runContext, Object request) throws IllegalVariableEvaluationException, IOException {
         if (request instanceof String requestStr) {
-            return parseQuery(runContext.render(requestStr));
+            return runContext.render(requestStr);
         } else if (request instanceof Map requestMap) {
-            String requestStr = runContext.render(MAPPER.writeValueAsString(requestMap));
-            return parseQuery(requestStr);
+            return runContext.render(MAPPER.writeValueAsString(requestMap));
         } else {
             throw new IllegalArgumentException("The `request` property must be a String or an Object");
         }
     }
 
-    private static SearchRequest.Builder parseQuery(String query) throws IOException {
+    public static SearchRequest.Builder parseQuery(String query) throws IOException {
         try (Reader reader = new StringReader(query)) {
             return new SearchRequest.Builder().withJson(reader);
         }
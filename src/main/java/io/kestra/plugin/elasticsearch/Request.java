@@ -17,7 +17,7 @@ import io.kestra.core.runners.RunContext;
 import io.kestra.core.serializers.JacksonMapper;
 import io.kestra.plugin.elasticsearch.model.HttpMethod;
 
-import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
@@ -127,7 +127,7 @@ public class Request extends AbstractTask implements RunnableTask<Request.Output
     @Override
     public Request.Output run(RunContext runContext) throws Exception {
         var logger = runContext.logger();
-        try (Rest5Client client = this.connection.client(runContext)) {
+        try (ElasticsearchClient client = this.connection.highLevelClient(runContext)) {
             var request = new co.elastic.clients.transport.rest5_client.low_level.Request(
                 runContext.render(method).as(HttpMethod.class).orElseThrow().name(),
                 runContext.render(endpoint).as(String.class).orElseThrow()
@@ -154,7 +154,7 @@ public class Request extends AbstractTask implements RunnableTask<Request.Output
 
             logger.debug("Starting request: {}", request);
 
-            var response = client.performRequest(request);
+            var response = ElasticsearchConnection.performRequest(client, request);
 
             response.getWarnings().forEach(logger::warn);
 
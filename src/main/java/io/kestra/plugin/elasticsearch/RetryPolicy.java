@@ -0,0 +1,195 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.slf4j.Logger;
+
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.runners.RunContext;
+import io.kestra.core.utils.Rethrow;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.transport.TransportException;
+import co.elastic.clients.transport.rest5_client.low_level.ResponseException;
+import lombok.Builder;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Retries the requests of a task that failed on a transient error: a dropped connection, a timeout, or one of the
+ * retryable status codes, waiting for an exponential backoff with jitter between attempts.
+ * <p>
+ * Only idempotent endpoints are retried, plus `_bulk` when {@code bulk} is set: a bulk request may have been partly
+ * applied before failing, which is harmless with explicit ids but duplicates documents with generated ones. Scroll
+ * pages are not idempotent either, the cursor moves forward as soon as the server handles the request.
+ * <p>
+ * A thread interruption is never retried: it means the task is being killed, not that the cluster failed.
+ */
+public class RetryPolicy {
+    static final Set<String> IDEMPOTENT_ENDPOINTS = Set.of(
+        "search",
+        "clear_scroll",
+        "count",
+        "get",
+        "mget",
+        "esql.query",
+        "esql.async_query_get"
+    );
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double jitter;
+    private final Set<Integer> retryableStatuses;
+    private final boolean bulk;
+    private final Logger logger;
+
+    private final Map<String, AtomicLong> retryCounts = new ConcurrentHashMap<>();
+    private final AtomicLong backoffDuration = new AtomicLong();
+
+    @Builder
+    private RetryPolicy(
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff,
+        double jitter,
+        Set<Integer> retryableStatuses,
+        boolean bulk,
+        Logger logger) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("`retry.maxAttempts` must be greater than 0");
+        }
+
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("`retry.jitter` must be between 0 and 1");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.jitter = jitter;
+        this.retryableStatuses = retryableStatuses;
+        this.bulk = bulk;
+        this.logger = logger;
+    }
+
+    /**
+     * Calls the endpoint, retrying it if it is safe to.
+     *
+     * @param endpoint the id of the endpoint, as in the Elasticsearch specification, e.g. `search`
+     */
+    public <T> T execute(String endpoint, Rethrow.SupplierChecked<T, IOException> call) throws IOException {
+        if (!this.isRetried(endpoint)) {
+            return call.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= this.maxAttempts || !this.isRetryable(e)) {
+                    throw e;
+                }
+
+                Duration backoff = this.onRetry(endpoint, e, attempt);
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry `" + endpoint + "`");
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #execute(String, Rethrow.SupplierChecked)} for a call resubscribed on every attempt, waiting
+     * without blocking a thread.
+     */
+    public <T> Mono<T> executeAsync(String endpoint, Mono<T> call) {
+        if (!this.isRetried(endpoint)) {
+            return call;
+        }
+
+        return call.retryWhen(Retry.from(signals -> signals.concatMap(signal ->
+        {
+            int attempt = (int) signal.totalRetries() + 1;
+
+            if (attempt >= this.maxAttempts || !this.isRetryable(signal.failure())) {
+                return Mono.error(signal.failure());
+            }
+
+            return Mono.delay(this.onRetry(endpoint, signal.failure(), attempt));
+        })));
+    }
+
+    private boolean isRetried(String endpoint) {
+        return IDEMPOTENT_ENDPOINTS.contains(endpoint) || (this.bulk && "bulk".equals(endpoint));
+    }
+
+    private Duration onRetry(String endpoint, Throwable throwable, int attempt) {
+        Duration backoff = this.backoff(attempt);
+        this.retryCounts.computeIfAbsent(endpoint, k -> new AtomicLong()).incrementAndGet();
+        this.backoffDuration.addAndGet(backoff.toNanos());
+        this.logger.warn("Retrying `{}` in {} after {} (attempt {}/{})", endpoint, backoff, throwable.toString(), attempt, this.maxAttempts);
+
+        return backoff;
+    }
+
+    Duration backoff(int attempt) {
+        Duration backoff = this.initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+        if (backoff.compareTo(this.maxBackoff) > 0) {
+            backoff = this.maxBackoff;
+        }
+
+        // spread the retries of concurrent tasks by removing up to `jitter` of the backoff
+        double factor = 1 - this.jitter * ThreadLocalRandom.current().nextDouble();
+
+        return Duration.ofNanos((long) (backoff.toNanos() * factor));
+    }
+
+    boolean isRetryable(Throwable throwable) {
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+
+        if (throwable instanceof ElasticsearchException elasticsearchException) {
+            return this.retryableStatuses.contains(elasticsearchException.status());
+        }
+
+        if (throwable instanceof ResponseException responseException) {
+            return this.retryableStatuses.contains(responseException.getResponse().getStatusCode());
+        }
+
+        if (throwable instanceof TransportException transportException && transportException.statusCode() > 0) {
+            return this.retryableStatuses.contains(transportException.statusCode());
+        }
+
+        if (throwable instanceof SocketException ||
+            throwable instanceof SocketTimeoutException ||
+            throwable instanceof ConnectionClosedException ||
+            throwable instanceof NoHttpResponseException) {
+            return true;
+        }
+
+        return throwable.getCause() != null && throwable.getCause() != throwable && this.isRetryable(throwable.getCause());
+    }
+
+    public void report(RunContext runContext) {
+        this.retryCounts.forEach((endpoint, count) -> runContext.metric(Counter.of("retry.count", count.get(), "endpoint", endpoint)));
+        runContext.metric(Timer.of("retry.backoff", Duration.ofNanos(this.backoffDuration.get())));
+    }
+}
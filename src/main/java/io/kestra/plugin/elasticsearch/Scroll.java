@@ -2,31 +2,44 @@ package io.kestra.plugin.elasticsearch;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 
 import io.kestra.core.models.annotations.Example;
 import io.kestra.core.models.annotations.Metric;
 import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.annotations.PluginProperty;
 import io.kestra.core.models.executions.metrics.Counter;
 import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.RunnableTask;
 import io.kestra.core.runners.RunContext;
 import io.kestra.core.serializers.FileSerde;
+import io.kestra.plugin.elasticsearch.model.Pagination;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.Time;
 import co.elastic.clients.elasticsearch.core.*;
-import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import static io.kestra.core.utils.Rethrow.throwConsumer;
+
 @SuperBuilder
 @ToString
 @EqualsAndHashCode
@@ -34,7 +47,7 @@ import reactor.core.publisher.Mono;
 @NoArgsConstructor
 @Schema(
     title = "Scroll and store search results",
-    description = "Executes a search with a 60s scroll context and streams all hits to a Kestra internal storage file. Uses the provided request body and optional indices/routing from AbstractSearch."
+    description = "Executes a search with a scroll context, or a point in time, kept alive for `keepAlive` between pages, and streams the hits to a Kestra internal storage file, up to `maxRecords`. Uses the provided request body and optional indices/routing from AbstractSearch."
 )
 @Plugin(
     metrics = {
@@ -67,79 +80,234 @@ import reactor.core.publisher.Mono;
     }
 )
 public class Scroll extends AbstractSearch implements RunnableTask<Scroll.Output> {
+    @Schema(
+        title = "Pagination",
+        description = "`SCROLL` (default) pages with the scroll API. " +
+            "`POINT_IN_TIME` opens a point in time on the indexes, pages with `search_after` sorted on `_shard_doc`, and closes the point in time at the end: " +
+            "it doesn't pin a scroll context on every shard and survives node restarts, which suits long exports better. " +
+            "With `POINT_IN_TIME`, `_shard_doc` is appended to the `sort` of the request as a tie-breaker, and the request can't use `indexes` or `routing` itself, they are set on the point in time."
+    )
+    @Builder.Default
+    @PluginProperty(group = "processing")
+    private Property<Pagination> pagination = Property.ofValue(Pagination.SCROLL);
+
+    @Schema(
+        title = "Slices",
+        description = "Number of slices the search is split into with the `slice` parameter of Elasticsearch. " +
+            "The slices are paged concurrently and each one is written to its own part of the output file, so the export scales with the shards of the indexes; " +
+            "about the number of shards is a good value. Default 1, no slicing. The hits of different slices aren't sorted together."
+    )
+    @Builder.Default
+    @PluginProperty(group = "processing")
+    private Property<Integer> slices = Property.ofValue(1);
+
+    @Schema(
+        title = "Prefetched pages",
+        description = "Number of pages of each slice received and waiting to be written, while the next page is requested: " +
+            "the next page is always requested as soon as a page is received, so the network wait and the writing of the hits overlap. " +
+            "A higher value absorbs slower writes at the cost of memory, up to this many pages per slice. Default 1, double buffering."
+    )
+    @Builder.Default
+    @PluginProperty(group = "processing")
+    private Property<Integer> prefetch = Property.ofValue(1);
+
+    @Schema(
+        title = "Keep alive",
+        description = "How long Elasticsearch keeps the scroll context, or the point in time, alive between two pages; it must cover the time to write a page. Default 60 seconds."
+    )
+    @Builder.Default
+    @PluginProperty(group = "processing")
+    private Property<Duration> keepAlive = Property.ofValue(Duration.ofSeconds(60));
+
+    @Schema(
+        title = "Page size",
+        description = "Number of hits per page, per slice; overrides the `size` of the request."
+    )
+    @PluginProperty(group = "processing")
+    private Property<Integer> pageSize;
+
+    @Schema(
+        title = "Maximum records",
+        description = "Stops paging once this many hits are written, and releases the scroll context or point in time right away; all the hits by default."
+    )
+    @PluginProperty(group = "processing")
+    private Property<Long> maxRecords;
+
     @Override
     public Scroll.Output run(RunContext runContext) throws Exception {
         Logger logger = runContext.logger();
-        File tempFile = runContext.workingDir().createTempFile(".ion").toFile();
+        boolean pointInTime = runContext.render(this.pagination).as(Pagination.class).orElse(Pagination.SCROLL) == Pagination.POINT_IN_TIME;
+        int slices = runContext.render(this.slices).as(Integer.class).orElse(1);
+        int prefetch = runContext.render(this.prefetch).as(Integer.class).orElse(1);
+        Duration keepAlive = runContext.render(this.keepAlive).as(Duration.class).orElse(Duration.ofSeconds(60));
+        Integer pageSize = runContext.render(this.pageSize).as(Integer.class).orElse(null);
+        Long maxRecords = runContext.render(this.maxRecords).as(Long.class).orElse(null);
+
+        if (slices < 1 || prefetch < 1 || (pageSize != null && pageSize < 1) || (maxRecords != null && maxRecords < 1)) {
+            throw new IllegalArgumentException("`slices`, `prefetch`, `pageSize` and `maxRecords` must be greater than 0");
+        }
+
+        if (keepAlive.isNegative() || keepAlive.isZero()) {
+            throw new IllegalArgumentException("`keepAlive` must be positive");
+        }
 
-        try (
-            ElasticsearchClient client = this.connection.highLevelClient(runContext);
-            OutputStream output = new BufferedOutputStream(new FileOutputStream(tempFile), FileSerde.BUFFER_SIZE)
-        ) {
-            // build request
-            SearchRequest.Builder request = this.request(runContext);
+        if (pageSize != null && maxRecords != null) {
+            // don't fetch more than needed for a sample
+            pageSize = (int) Math.min(pageSize, maxRecords);
+        }
 
-            request.scroll(new Time.Builder().time("60s").build());
+        Time keepAliveTime = Time.of(time -> time.time(keepAlive.toMillis() + "ms"));
 
-            logger.debug("Starting query: {}", request);
+        List<File> parts = new ArrayList<>();
+        for (int slice = 0; slice < slices; slice++) {
+            parts.add(runContext.workingDir().createTempFile(".ion").toFile());
+        }
 
-            // start scroll
+        try (ElasticsearchClient client = this.connection.highLevelClient(runContext)) {
             AtomicLong recordsCount = new AtomicLong();
             AtomicLong requestsCount = new AtomicLong();
             AtomicLong requestsDuration = new AtomicLong();
+            AtomicLong remaining = new AtomicLong(maxRecords != null ? maxRecords : Long.MAX_VALUE);
 
-            String scrollId = null;
+            // the scroll id of every slice, or the point in time id, to release at the end
+            Map<Integer, String> scrollIds = new ConcurrentHashMap<>();
+            AtomicReference<String> pointInTimeId = new AtomicReference<>();
 
             try {
-                SearchResponse<Map> searchResponse = client.search(request.build(), Map.class);
-                HitsMetadata<Map> hits = searchResponse.hits();
-                long took = searchResponse.took();
-                scrollId = searchResponse.scrollId();
-
-                do {
-                    requestsDuration.addAndGet(took);
-                    requestsCount.incrementAndGet();
-
-                    Flux<Map> hitFlux = Flux.fromIterable(hits.hits()).map(hit -> hit.source());
-                    Mono<Long> longMono = FileSerde.writeAll(output, hitFlux);
-
-                    recordsCount.addAndGet(longMono.blockOptional().orElse(0L));
-
-                    ScrollRequest searchScrollRequest = new ScrollRequest.Builder()
-                        .scrollId(scrollId)
-                        .scroll(new Time.Builder().time("60s").build())
-                        .build();
-
-                    ScrollResponse<Map> scrollResponse = client.scroll(searchScrollRequest, Map.class);
-                    hits = scrollResponse.hits();
-                    took = scrollResponse.took();
-                } while (!hits.hits().isEmpty());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                String body = null;
+                if (pointInTime) {
+                    pointInTimeId.set(this.openPointInTime(runContext, client, keepAliveTime));
+                    // parsed again for every page, as the request builders can't be reused
+                    body = QueryService.render(runContext, this.getRequest());
+                    logger.debug("Starting query: {}", body);
+                }
+
+                List<Flux<Long>> exports = new ArrayList<>();
+                for (int slice = 0; slice < slices; slice++) {
+                    Paging paging = new Paging(keepAliveTime, pageSize, slice, slices);
+                    Flux<ResponseBody<IonSource>> pages = pointInTime ?
+                        pointInTimePages(client, body, paging, pointInTimeId) :
+                        this.scrollPages(runContext, client, paging, scrollIds);
+
+                    exports.add(write(
+                        pages
+                            .doOnNext(page ->
+                            {
+                                requestsDuration.addAndGet(page.took());
+                                requestsCount.incrementAndGet();
+                            })
+                            .map(page -> claim(page.hits().hits(), remaining))
+                            // cancels the next page once `maxRecords` is reached by any slice
+                            .takeUntil(hits -> remaining.get() == 0),
+                        parts.get(slice),
+                        prefetch
+                    ));
+                }
+
+                Flux.merge(exports)
+                    .doOnNext(recordsCount::addAndGet)
+                    .blockLast();
             } finally {
-                this.clearScrollId(logger, client, scrollId);
+                if (pointInTime) {
+                    this.closePointInTime(logger, client, pointInTimeId.get());
+                } else {
+                    this.clearScrollIds(logger, client, scrollIds.values());
+                }
             }
 
             // metrics
             runContext.metric(Counter.of("requests.count", requestsCount.get()));
             runContext.metric(Counter.of("records", recordsCount.get()));
-            runContext.metric(Timer.of("requests.duration", Duration.ofNanos(requestsDuration.get())));
+            runContext.metric(Timer.of("requests.duration", Duration.ofMillis(requestsDuration.get())));
 
             // outputs
             return Output.builder()
                 .size(recordsCount.get())
-                .uri(runContext.storage().putFile(tempFile))
+                .uri(runContext.storage().putFile(join(parts)))
                 .build();
         }
     }
 
-    private void clearScrollId(Logger logger, ElasticsearchClient client, String scrollId) {
-        if (scrollId == null) {
+    /**
+     * Takes the hits of a page left to reach `maxRecords`.
+     */
+    private static List<Hit<IonSource>> claim(List<Hit<IonSource>> hits, AtomicLong remaining) {
+        long available = remaining.getAndUpdate(count -> Math.max(count - hits.size(), 0));
+
+        return available >= hits.size() ? hits : hits.subList(0, (int) available);
+    }
+
+    /**
+     * Writes the hits of the pages to the file, emitting the count of hits written for every page. The `_source` of the
+     * hits was transcoded to Ion while reading the responses, so it is written as is.
+     *
+     * @param prefetch the number of pages received to buffer while a page is written
+     */
+    private static Flux<Long> write(Flux<List<Hit<IonSource>>> pages, File file, int prefetch) {
+        return Flux.using(
+            () -> new BufferedOutputStream(new FileOutputStream(file), FileSerde.BUFFER_SIZE),
+            output -> pages
+                .concatMap(hits -> Mono.fromCallable(() -> IonSource.writeAll(output, hits)), prefetch)
+                .concatWith(Mono.fromCallable(() ->
+                {
+                    output.flush();
+                    return 0L;
+                })),
+            throwConsumer(OutputStream::close)
+        );
+    }
+
+    /**
+     * Appends the parts of the slices to the first one; Ion streams can be concatenated as is.
+     */
+    private static File join(List<File> parts) throws IOException {
+        File file = parts.getFirst();
+
+        if (parts.size() > 1) {
+            try (OutputStream output = new FileOutputStream(file, true)) {
+                for (File part : parts.subList(1, parts.size())) {
+                    Files.copy(part.toPath(), output);
+                    Files.delete(part.toPath());
+                }
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * The pages of a scroll; the next page is requested as soon as a page is received, while the hits of the page are
+     * written, and is only emitted once there is demand for it.
+     */
+    private Flux<ResponseBody<IonSource>> scrollPages(RunContext runContext, ElasticsearchClient client, Paging paging, Map<Integer, String> scrollIds) throws Exception {
+        SearchRequest.Builder request = paging.apply(this.request(runContext));
+        request.scroll(paging.keepAlive());
+
+        runContext.logger().debug("Starting query: {}", request);
+
+        return WireFormatService.searchAsync(client, request.build(), IonSource.deserializer())
+            .<ResponseBody<IonSource>>map(searchResponse -> searchResponse)
+            .expand(page -> page.hits().hits().isEmpty() ?
+                Mono.empty() :
+                WireFormatService.scrollAsync(client, scrollRequest(page.scrollId(), paging.keepAlive()), IonSource.deserializer()).<ResponseBody<IonSource>>map(scrollResponse -> scrollResponse)
+            )
+            .doOnNext(page -> scrollIds.put(paging.slice(), page.scrollId()));
+    }
+
+    private static ScrollRequest scrollRequest(String scrollId, Time keepAlive) {
+        return new ScrollRequest.Builder()
+            .scrollId(scrollId)
+            .scroll(keepAlive)
+            .build();
+    }
+
+    private void clearScrollIds(Logger logger, ElasticsearchClient client, Collection<String> scrollIds) {
+        if (scrollIds.isEmpty()) {
             return;
         }
 
         ClearScrollRequest clearScrollRequest = new ClearScrollRequest.Builder()
-            .scrollId(scrollId)
+            .scrollId(List.copyOf(scrollIds))
             .build();
 
         try {
@@ -149,6 +317,93 @@ public class Scroll extends AbstractSearch implements RunnableTask<Scroll.Output
         }
     }
 
+    private String openPointInTime(RunContext runContext, ElasticsearchClient client, Time keepAlive) throws Exception {
+        List<String> indexes = runContext.render(this.getIndexes()).asList(String.class);
+
+        OpenPointInTimeRequest.Builder request = new OpenPointInTimeRequest.Builder()
+            .index(indexes.isEmpty() ? List.of("_all") : indexes)
+            .keepAlive(keepAlive);
+
+        if (this.routing != null) {
+            request.routing(runContext.render(this.routing).as(String.class).orElseThrow());
+        }
+
+        String id = client.openPointInTime(request.build()).id();
+        runContext.logger().debug("Opened point in time on {}", indexes);
+
+        return id;
+    }
+
+    /**
+     * The pages of a point in time, each one searching after the sort values of the last hit of the previous one.
+     */
+    private static Flux<ResponseBody<IonSource>> pointInTimePages(ElasticsearchClient client, String body, Paging paging, AtomicReference<String> pointInTimeId) {
+        return pointInTimePage(client, body, paging, pointInTimeId, null)
+            .expand(page -> page.hits().hits().isEmpty() ?
+                Mono.empty() :
+                pointInTimePage(client, body, paging, pointInTimeId, page.hits().hits().getLast().sort())
+            );
+    }
+
+    private static Mono<ResponseBody<IonSource>> pointInTimePage(
+        ElasticsearchClient client,
+        String body,
+        Paging paging,
+        AtomicReference<String> pointInTimeId,
+        List<FieldValue> searchAfter) {
+        return Mono.fromCallable(() ->
+            {
+                SearchRequest.Builder request = paging.apply(QueryService.parseQuery(body))
+                    .pit(pit -> pit.id(pointInTimeId.get()).keepAlive(paging.keepAlive()))
+                    .sort(sort -> sort.field(field -> field.field("_shard_doc")))
+                    .trackTotalHits(trackTotalHits -> trackTotalHits.enabled(false));
+
+                if (searchAfter != null) {
+                    request.searchAfter(searchAfter);
+                }
+
+                return request.build();
+            })
+            .flatMap(request -> WireFormatService.searchAsync(client, request, IonSource.deserializer()))
+            .<ResponseBody<IonSource>>map(searchResponse -> searchResponse)
+            .doOnNext(page ->
+            {
+                // the id of the point in time can change between pages
+                if (page.pitId() != null) {
+                    pointInTimeId.set(page.pitId());
+                }
+            });
+    }
+
+    private void closePointInTime(Logger logger, ElasticsearchClient client, String pointInTimeId) {
+        if (pointInTimeId == null) {
+            return;
+        }
+
+        try {
+            client.closePointInTime(request -> request.id(pointInTimeId));
+        } catch (IOException e) {
+            logger.warn("Failed to close point in time", e);
+        }
+    }
+
+    /**
+     * The paging options of a slice, set on every search request of the slice.
+     */
+    private record Paging(Time keepAlive, Integer pageSize, int slice, int slices) {
+        SearchRequest.Builder apply(SearchRequest.Builder request) {
+            if (this.pageSize != null) {
+                request.size(this.pageSize);
+            }
+
+            if (this.slices > 1) {
+                request.slice(sliced -> sliced.id(String.valueOf(this.slice)).max(this.slices));
+            }
+
+            return request;
+        }
+    }
+
     @Builder
     @Getter
     public static class Output implements io.kestra.core.models.tasks.Output {
@@ -31,7 +31,6 @@ import co.elastic.clients.elasticsearch.core.SearchResponse;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
-import reactor.core.publisher.Flux;
 
 import static io.kestra.core.utils.Rethrow.throwConsumer;
 
@@ -92,38 +91,47 @@ public class Search extends AbstractSearch implements RunnableTask<Search.Output
             SearchRequest.Builder request = this.request(runContext);
             logger.debug("Starting query: {}", request);
 
-            SearchResponse<Map> searchResponse = client.search(request.build(), Map.class);
-
             Output.OutputBuilder outputBuilder = Search.Output.builder();
-
-            switch (runContext.render(fetchType).as(FetchType.class).orElseThrow()) {
-                case FETCH:
-                    Pair<List<Map<String, Object>>, Integer> fetch = this.fetch(searchResponse);
-                    outputBuilder
-                        .rows(fetch.getLeft())
-                        .size(fetch.getRight());
-                    break;
-
-                case FETCH_ONE:
-                    var o = this.fetchOne(searchResponse);
-
-                    outputBuilder
-                        .row(o)
-                        .size(o != null ? 1 : 0);
-                    break;
-
-                case STORE:
-                    Pair<URI, Long> store = this.store(runContext, searchResponse);
-                    outputBuilder
-                        .uri(store.getLeft())
-                        .size(store.getRight().intValue());
-                    break;
+            FetchType fetchType = runContext.render(this.fetchType).as(FetchType.class).orElseThrow();
+
+            SearchResponse<?> searchResponse;
+            if (fetchType == FetchType.STORE) {
+                // hits are transcoded to Ion while reading the response, without building maps
+                SearchResponse<IonSource> storeResponse = WireFormatService.search(client, request.build(), IonSource.deserializer());
+
+                Pair<URI, Long> store = this.store(runContext, storeResponse);
+                outputBuilder
+                    .uri(store.getLeft())
+                    .size(store.getRight().intValue());
+
+                searchResponse = storeResponse;
+            } else {
+                SearchResponse<Map> mapResponse = WireFormatService.search(client, request.build());
+
+                switch (fetchType) {
+                    case FETCH:
+                        Pair<List<Map<String, Object>>, Integer> fetch = this.fetch(mapResponse);
+                        outputBuilder
+                            .rows(fetch.getLeft())
+                            .size(fetch.getRight());
+                        break;
+
+                    case FETCH_ONE:
+                        var o = this.fetchOne(mapResponse);
+
+                        outputBuilder
+                            .row(o)
+                            .size(o != null ? 1 : 0);
+                        break;
+                }
+
+                searchResponse = mapResponse;
             }
 
             // metrics
             runContext.metric(Counter.of("requests.count", 1));
             runContext.metric(Counter.of("records", searchResponse.hits().hits().size()));
-            runContext.metric(Timer.of("requests.duration", Duration.ofNanos(searchResponse.took())));
+            runContext.metric(Timer.of("requests.duration", Duration.ofMillis(searchResponse.took())));
 
             // outputs
             return outputBuilder
@@ -132,12 +140,11 @@ public class Search extends AbstractSearch implements RunnableTask<Search.Output
         }
     }
 
-    protected Pair<URI, Long> store(RunContext runContext, SearchResponse<Map> searchResponse) throws IOException {
+    protected Pair<URI, Long> store(RunContext runContext, SearchResponse<IonSource> searchResponse) throws IOException {
         File tempFile = runContext.workingDir().createTempFile(".ion").toFile();
 
         try (var output = new BufferedOutputStream(new FileOutputStream(tempFile), FileSerde.BUFFER_SIZE)) {
-            Flux<Map> hitFlux = Flux.fromIterable(searchResponse.hits().hits()).map(hit -> hit.source());
-            Long count = FileSerde.writeAll(output, hitFlux).block();
+            long count = IonSource.writeAll(output, searchResponse.hits().hits());
 
             return Pair.of(
                 runContext.storage().putFile(tempFile),
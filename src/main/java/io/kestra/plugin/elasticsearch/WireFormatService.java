@@ -0,0 +1,287 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.kestra.plugin.elasticsearch.model.XContentType;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.ScrollRequest;
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.json.jackson.JacksonJsonpGenerator;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpParser;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.rest5_client.low_level.Request;
+import co.elastic.clients.transport.rest5_client.low_level.RequestOptions;
+import co.elastic.clients.transport.rest5_client.low_level.Response;
+import co.elastic.clients.transport.rest5_client.low_level.ResponseException;
+import co.elastic.clients.util.BinaryData;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import reactor.core.publisher.Mono;
+
+import static io.kestra.core.utils.Rethrow.throwFunction;
+
+/**
+ * Sends requests of the high-level client in the `wireFormat` of the connection.
+ * <p>
+ * The transport of the high-level client only speaks JSON, so binary formats go through the low-level client instead,
+ * as do asynchronous requests in every format, so that their responses are not decoded on the HTTP client threads.
+ * The request serializers and response deserializers of the client work on any Jackson generator and parser though,
+ * so documents are still encoded and decoded straight from SMILE or CBOR, without an intermediate JSON copy. Requests
+ * keep the `compatible-with` media type of the `targetServerVersion`, and error responses are decoded into the same
+ * {@link ElasticsearchException} the transport throws.
+ */
+public abstract class WireFormatService {
+    private static final SmileFactory SMILE = new SmileFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+    private static final byte STREAM_SEPARATOR = (byte) 0xFF;
+
+    public static SearchResponse<Map> search(ElasticsearchClient client, SearchRequest request) throws IOException {
+        return search(client, request, JsonpDeserializer.of(Map.class));
+    }
+
+    /**
+     * @param documentDeserializer the deserializer of the `_source` of the hits, e.g. {@link IonSource#deserializer()}, used for one request
+     */
+    public static <T> SearchResponse<T> search(ElasticsearchClient client, SearchRequest request, JsonpDeserializer<T> documentDeserializer) throws IOException {
+        return perform(client, ElasticsearchConnection.wireFormat(client), request, SearchRequest.createSearchEndpoint(documentDeserializer));
+    }
+
+    public static ScrollResponse<Map> scroll(ElasticsearchClient client, ScrollRequest request) throws IOException {
+        return perform(client, ElasticsearchConnection.wireFormat(client), request, ScrollRequest.createScrollEndpoint(JsonpDeserializer.of(Map.class)));
+    }
+
+    /**
+     * `_bulk` only supports SMILE among the binary formats, so CBOR bulk requests are sent in JSON.
+     */
+    public static BulkResponse bulk(ElasticsearchClient client, BulkRequest request) throws IOException {
+        XContentType wireFormat = ElasticsearchConnection.wireFormat(client);
+
+        return perform(client, wireFormat == XContentType.SMILE ? wireFormat : XContentType.JSON, request, BulkRequest._ENDPOINT);
+    }
+
+    public static <T> Mono<SearchResponse<T>> searchAsync(ElasticsearchClient client, SearchRequest request, JsonpDeserializer<T> documentDeserializer) {
+        return performAsync(client, ElasticsearchConnection.wireFormat(client), request, SearchRequest.createSearchEndpoint(documentDeserializer));
+    }
+
+    public static <T> Mono<ScrollResponse<T>> scrollAsync(ElasticsearchClient client, ScrollRequest request, JsonpDeserializer<T> documentDeserializer) {
+        return performAsync(client, ElasticsearchConnection.wireFormat(client), request, ScrollRequest.createScrollEndpoint(documentDeserializer));
+    }
+
+    public static Mono<BulkResponse> bulkAsync(ElasticsearchClient client, BulkRequest request) {
+        XContentType wireFormat = ElasticsearchConnection.wireFormat(client);
+
+        return performAsync(client, wireFormat == XContentType.SMILE ? wireFormat : XContentType.JSON, request, BulkRequest._ENDPOINT);
+    }
+
+    /**
+     * Sends the request in the wire format, with the `retry` policy of the connection.
+     */
+    static <R, T> T perform(ElasticsearchClient client, XContentType wireFormat, R request, Endpoint<R, T, ?> endpoint) throws IOException {
+        return ElasticsearchConnection.retry(client, endpoint.id(), () ->
+        {
+            if (wireFormat == XContentType.JSON) {
+                return client._transport().performRequest(request, endpoint, client._transportOptions());
+            }
+
+            Response response;
+            try {
+                response = ElasticsearchConnection.performRequest(client, lowLevelRequest(client, wireFormat, request, endpoint));
+            } catch (ResponseException e) {
+                ElasticsearchException error = error(client, e, endpoint);
+                if (error != null) {
+                    throw error;
+                }
+
+                throw e;
+            }
+
+            return read(client, response, endpoint);
+        });
+    }
+
+    /**
+     * Same as {@link #perform(ElasticsearchClient, XContentType, Object, Endpoint)} without blocking a thread while
+     * waiting for the response. Requests go through the low-level client in every wire format, JSON included, so the
+     * response is decoded on the scheduler of the client rather than in the callback of the HTTP client, on its I/O
+     * threads shared by all the tasks using the client.
+     */
+    static <R, T> Mono<T> performAsync(ElasticsearchClient client, XContentType wireFormat, R request, Endpoint<R, T, ?> endpoint) {
+        Mono<T> call = Mono.fromCallable(() -> lowLevelRequest(client, wireFormat, request, endpoint))
+            .flatMap(lowLevelRequest -> Mono.fromFuture(() -> ElasticsearchConnection.performRequestAsync(client, lowLevelRequest)))
+            .publishOn(ElasticsearchConnection.scheduler(client))
+            .map(throwFunction(response -> read(client, response, endpoint)))
+            .onErrorMap(ResponseException.class, e -> Objects.requireNonNullElse(error(client, e, endpoint), e));
+
+        return ElasticsearchConnection.retryAsync(client, endpoint.id(), call);
+    }
+
+    private static <R> Request lowLevelRequest(ElasticsearchClient client, XContentType wireFormat, R request, Endpoint<R, ?, ?> endpoint) throws IOException {
+        JacksonJsonpMapper mapper = (JacksonJsonpMapper) client._jsonpMapper();
+
+        var lowLevelRequest = new Request(endpoint.method(request), endpoint.requestUrl(request));
+        endpoint.queryParameters(request).forEach(lowLevelRequest::addParameter);
+        lowLevelRequest.setOptions(RequestOptions.DEFAULT.toBuilder().addHeader("Accept", ElasticsearchConnection.compatibleMediaType(client, subtype(wireFormat))));
+
+        Object body = endpoint.body(request);
+        if (body != null) {
+            var output = new ByteArrayOutputStream();
+            String subtype = subtype(wireFormat);
+
+            if (wireFormat == XContentType.JSON && body instanceof NdJsonpSerializable ndJsonpSerializable) {
+                BulkService.write(output, mapper, ndJsonpSerializable);
+                subtype = "x-ndjson";
+            } else if (body instanceof NdJsonpSerializable ndJsonpSerializable) {
+                writeStream(output, factory(wireFormat, mapper), mapper, ndJsonpSerializable);
+            } else {
+                write(output, factory(wireFormat, mapper), mapper, body);
+            }
+
+            lowLevelRequest.setEntity(new ByteArrayEntity(output.toByteArray(), ContentType.parse(ElasticsearchConnection.compatibleMediaType(client, subtype))));
+        }
+
+        return lowLevelRequest;
+    }
+
+    private static <T> T read(ElasticsearchClient client, Response response, Endpoint<?, T, ?> endpoint) throws IOException {
+        if (!(endpoint instanceof JsonEndpoint<?, T, ?> jsonEndpoint)) {
+            throw new IllegalArgumentException("Endpoint '" + endpoint.id() + "' can't be decoded from a binary format");
+        }
+
+        JacksonJsonpMapper mapper = (JacksonJsonpMapper) client._jsonpMapper();
+
+        try (
+            InputStream content = response.getEntity().getContent();
+            JsonParser parser = new JacksonJsonpParser(responseFactory(response.getHeader("Content-Type"), mapper).createParser(content), mapper)
+        ) {
+            return jsonEndpoint.responseDeserializer().deserialize(parser, mapper);
+        }
+    }
+
+    /**
+     * Decodes an error response with the error deserializer of the endpoint, as the transport does.
+     *
+     * @return null when the body is not an Elasticsearch error, the low-level failure is then kept
+     */
+    private static ElasticsearchException error(ElasticsearchClient client, ResponseException exception, Endpoint<?, ?, ?> endpoint) {
+        Response response = exception.getResponse();
+        int status = response.getStatusCode();
+        JsonpDeserializer<?> errorDeserializer = endpoint.isError(status) ? endpoint.errorDeserializer(status) : null;
+
+        if (errorDeserializer != null && response.getEntity() != null) {
+            JacksonJsonpMapper mapper = (JacksonJsonpMapper) client._jsonpMapper();
+
+            try (
+                InputStream content = response.getEntity().getContent();
+                JsonParser parser = new JacksonJsonpParser(responseFactory(response.getHeader("Content-Type"), mapper).createParser(content), mapper)
+            ) {
+                if (errorDeserializer.deserialize(parser, mapper) instanceof ErrorResponse errorResponse) {
+                    return new ElasticsearchException(endpoint.id(), errorResponse);
+                }
+            } catch (IOException | RuntimeException e) {
+                exception.addSuppressed(e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes every serializable as its own document followed by the stream separator, the binary equivalent of NDJSON.
+     */
+    private static void writeStream(OutputStream output, JsonFactory factory, JacksonJsonpMapper mapper, NdJsonpSerializable value) throws IOException {
+        Iterator<?> values = value._serializables();
+
+        while (values.hasNext()) {
+            Object item = values.next();
+
+            if (item == null) {
+                continue;
+            }
+
+            if (item instanceof NdJsonpSerializable nested && item != value) {
+                writeStream(output, factory, mapper, nested);
+                continue;
+            }
+
+            write(output, factory, mapper, item);
+            output.write(STREAM_SEPARATOR);
+        }
+    }
+
+    private static void write(OutputStream output, JsonFactory factory, JacksonJsonpMapper mapper, Object value) throws IOException {
+        try (var jacksonGenerator = factory.createGenerator(CloseShieldOutputStream.wrap(output))) {
+            if (value instanceof BinaryData binaryData) {
+                // documents already serialized in JSON are transcoded
+                var json = new ByteArrayOutputStream();
+                binaryData.writeTo(json);
+
+                try (var jsonParser = mapper.objectMapper().getFactory().createParser(json.toByteArray())) {
+                    jsonParser.nextToken();
+                    jacksonGenerator.copyCurrentStructure(jsonParser);
+                }
+            } else {
+                JsonGenerator generator = new JacksonJsonpGenerator(jacksonGenerator);
+                mapper.serialize(value, generator);
+                generator.flush();
+            }
+        }
+    }
+
+    private static JsonFactory factory(XContentType wireFormat, JacksonJsonpMapper mapper) {
+        return switch (wireFormat) {
+            case JSON -> mapper.objectMapper().getFactory();
+            case SMILE -> SMILE;
+            case CBOR -> CBOR;
+            default -> throw new IllegalArgumentException("Unsupported wire format " + wireFormat);
+        };
+    }
+
+    private static String subtype(XContentType wireFormat) {
+        return switch (wireFormat) {
+            case JSON -> "json";
+            case SMILE -> "smile";
+            case CBOR -> "cbor";
+            default -> throw new IllegalArgumentException("Unsupported wire format " + wireFormat);
+        };
+    }
+
+    /**
+     * Elasticsearch answers in the requested format, except for some errors that stay in JSON.
+     */
+    private static JsonFactory responseFactory(String contentType, JacksonJsonpMapper mapper) {
+        if (contentType != null && contentType.contains("smile")) {
+            return SMILE;
+        }
+
+        if (contentType != null && contentType.contains("cbor")) {
+            return CBOR;
+        }
+
+        return mapper.objectMapper().getFactory();
+    }
+}
@@ -0,0 +1,6 @@
+package io.kestra.plugin.elasticsearch.model;
+
+public enum Compression {
+    NONE,
+    GZIP
+}
@@ -0,0 +1,6 @@
+package io.kestra.plugin.elasticsearch.model;
+
+public enum Pagination {
+    SCROLL,
+    POINT_IN_TIME
+}
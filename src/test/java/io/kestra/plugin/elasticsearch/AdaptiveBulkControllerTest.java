@@ -0,0 +1,83 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class AdaptiveBulkControllerTest {
+    @Test
+    void shrinkOnRejection() {
+        var controller = new AdaptiveBulkController(1000, 4, Duration.ofMillis(300));
+
+        assertThat(controller.onRejected(), is(Duration.ofMillis(100)));
+        assertThat(controller.chunkSize(), is(500));
+        assertThat(controller.inFlightLimit(), is(2));
+
+        assertThat(controller.onRejected(), is(Duration.ofMillis(200)));
+        assertThat(controller.onRejected(), is(Duration.ofMillis(300)));
+        assertThat(controller.chunkSize(), is(125));
+        assertThat(controller.inFlightLimit(), is(1));
+        assertThat(controller.rejectedCount(), is(3L));
+        assertThat(controller.backoffDuration(), is(Duration.ofMillis(600)));
+    }
+
+    @Test
+    void growBackWhenHealthy() {
+        var controller = new AdaptiveBulkController(1000, 4, Duration.ofSeconds(30));
+        controller.onRejected();
+
+        for (int i = 0; i < AdaptiveBulkController.GROWTH_INTERVAL; i++) {
+            controller.onSuccess(Duration.ofMillis(10));
+        }
+
+        assertThat(controller.backoff(), is(Duration.ZERO));
+        assertThat(controller.chunkSize(), is(600));
+        assertThat(controller.inFlightLimit(), is(3));
+
+        for (int i = 0; i < AdaptiveBulkController.GROWTH_INTERVAL * 10; i++) {
+            controller.onSuccess(Duration.ofMillis(10));
+        }
+
+        assertThat(controller.chunkSize(), is(1000));
+        assertThat(controller.inFlightLimit(), is(4));
+    }
+
+    @Test
+    void slowResponsesDoNotGrow() {
+        var controller = new AdaptiveBulkController(1000, 4, Duration.ofSeconds(30));
+        controller.onRejected();
+
+        for (int i = 0; i < AdaptiveBulkController.GROWTH_INTERVAL; i++) {
+            controller.onSuccess(AdaptiveBulkController.HEALTHY_TOOK.plusSeconds(1));
+        }
+
+        assertThat(controller.chunkSize(), is(500));
+    }
+
+    @Test
+    void cancelWaitingRequests() {
+        var controller = new AdaptiveBulkController(1000, 1, Duration.ofSeconds(30));
+
+        var running = controller.acquire()
+            .then(Mono.never().doFinally(signalType -> controller.release()))
+            .subscribe();
+        var waiting = controller.acquire()
+            .then(Mono.never().doFinally(signalType -> controller.release()))
+            .subscribe();
+
+        // a waiter cancelled before getting a slot gives back nothing, and doesn't get the next one
+        waiting.dispose();
+        assertThat(controller.inFlight(), is(1));
+
+        running.dispose();
+        assertThat(controller.inFlight(), is(0));
+
+        controller.acquire().block(Duration.ofSeconds(1));
+        assertThat(controller.inFlight(), is(1));
+    }
+}
@@ -1,17 +1,25 @@
 package io.kestra.plugin.elasticsearch;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
 
 import io.kestra.core.models.property.Property;
 import io.kestra.core.runners.RunContext;
@@ -22,10 +30,15 @@ import io.kestra.core.tenant.TenantService;
 import io.kestra.core.utils.IdUtils;
 
 import jakarta.inject.Inject;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
 
 import static io.kestra.core.utils.Rethrow.throwConsumer;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
 
 class BulkTest extends ElsContainer {
 
@@ -106,4 +119,213 @@ class BulkTest extends ElsContainer {
         assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(1D));
         assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("records")).findFirst().orElseThrow().getValue(), is(5D));
     }
+
+    @Test
+    void runPassthrough() throws Exception {
+        RunContext runContext = runContextFactory.of();
+
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName().toLowerCase() + "_", ".trs");
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            DATA.apply(indice)
+                .forEach(
+                    throwConsumer(
+                        s -> output.write(
+                            (JacksonMapper
+                                .ofJson()
+                                .writeValueAsString(s) + "\n")
+                                .getBytes(StandardCharsets.UTF_8)
+                        )
+                    )
+                );
+        }
+
+        URI uri = storageInterface.put(TenantService.MAIN_TENANT, null, URI.create("/" + IdUtils.create() + ".ion"), new FileInputStream(tempFile));
+
+        Bulk put = Bulk.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .from(uri.toString())
+            .chunk(Property.ofValue(10))
+            .passthrough(Property.ofValue(true))
+            .build();
+
+        Bulk.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(5L));
+        assertThat(runOutput.getFailedCount(), is(0L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(1D));
+    }
+
+    @Test
+    void runWithFailedItems() throws Exception {
+        RunContext runContext = runContextFactory.of();
+
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName().toLowerCase() + "_", ".trs");
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            List.of(
+                Map.of("index", Map.of("_index", indice, "_id", "1")),
+                Map.of("field1", "value1"),
+                Map.of("create", Map.of("_index", indice, "_id", "1")),
+                Map.of("field1", "duplicate")
+            )
+                .forEach(throwConsumer(s -> output.write((JacksonMapper.ofJson().writeValueAsString(s) + "\n").getBytes(StandardCharsets.UTF_8))));
+        }
+
+        URI uri = storageInterface.put(TenantService.MAIN_TENANT, null, URI.create("/" + IdUtils.create() + ".ion"), new FileInputStream(tempFile));
+
+        Bulk put = Bulk.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .from(uri.toString())
+            .chunk(Property.ofValue(10))
+            .build();
+
+        Bulk.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(2L));
+        assertThat(runOutput.getFailedCount(), is(1L));
+        assertThat(runOutput.getRetriedCount(), is(0L));
+        assertThat(runOutput.getFailedUri(), notNullValue());
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(storageInterface.get(TenantService.MAIN_TENANT, null, runOutput.getFailedUri())))) {
+            List<String> lines = reader.lines().toList();
+
+            assertThat(lines.size(), is(2));
+            assertThat(lines.getFirst(), containsString("create"));
+            assertThat(lines.get(1), containsString("duplicate"));
+        }
+    }
+
+    @Test
+    void replayFailedOperations() throws Exception {
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        // a bulk update body is not upserted unless it says so
+        Bulk.Output failed = this.bulk(
+            this.upload(List.of(
+                Map.of("update", Map.of("_index", indice, "_id", "1")),
+                Map.of("doc", Map.of("field1", "updated"), "detect_noop", false)
+            )),
+            false
+        );
+
+        assertThat(failed.getFailedCount(), is(1L));
+        assertThat(failed.getFailedUri(), notNullValue());
+
+        Bulk.Output indexed = this.bulk(
+            this.upload(List.of(
+                Map.of("index", Map.of("_index", indice, "_id", "1")),
+                Map.of("field1", "value1")
+            )),
+            false
+        );
+
+        assertThat(indexed.getFailedCount(), is(0L));
+
+        for (boolean passthrough : List.of(true, false)) {
+            Bulk.Output replayed = this.bulk(failed.getFailedUri(), passthrough);
+
+            assertThat(replayed.getSize(), is(1L));
+            assertThat(replayed.getFailedCount(), is(0L));
+        }
+
+        Get.Output get = Get.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .key(Property.ofValue("1"))
+            .build()
+            .run(runContextFactory.of());
+
+        assertThat(get.getRow().get("field1"), is("updated"));
+    }
+
+    @Test
+    void upsertUpdateLinesWithoutUpdateBody() throws Exception {
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        Bulk.Output run = Bulk.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .from(this.upload(List.of(
+                Map.of("update", Map.of("_index", indice, "_id", "1")),
+                Map.of("doc", Map.of("field1", "value1"))
+            )).toString())
+            .build()
+            .run(runContextFactory.of());
+
+        assertThat(run.getFailedCount(), is(0L));
+
+        Get.Output get = Get.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .key(Property.ofValue("1"))
+            .build()
+            .run(runContextFactory.of());
+
+        // the line is the partial document, even when it looks like a bulk update body
+        assertThat(get.getRow().get("doc"), is(Map.of("field1", "value1")));
+    }
+
+    @Test
+    void readOnlyRequestedOperations() throws Exception {
+        var ndjson = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            ndjson.append("{\"index\":{\"_index\":\"ut_demand\",\"_id\":\"").append(i).append("\"}}\n");
+            ndjson.append("{\"field1\":\"value").append(i).append("\"}\n");
+        }
+        byte[] bytes = ndjson.toString().getBytes(StandardCharsets.UTF_8);
+
+        Bulk task = Bulk.builder().build();
+
+        for (boolean passthrough : List.of(true, false)) {
+            var read = new AtomicLong();
+            var input = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int count = super.read(buffer, offset, length);
+                    read.addAndGet(Math.max(count, 0));
+                    return count;
+                }
+            };
+
+            Flux<?> source = passthrough ? task.rawSource(input) : task.source(runContextFactory.of(), input);
+            var received = new AtomicInteger();
+            source.subscribe(new BaseSubscriber<Object>() {
+                @Override
+                protected void hookOnSubscribe(Subscription subscription) {
+                    this.request(10);
+                }
+
+                @Override
+                protected void hookOnNext(Object value) {
+                    received.incrementAndGet();
+                }
+            });
+
+            // only the operations requested are read, at most one read buffer ahead
+            assertThat(received.get(), is(10));
+            assertThat(read.get(), lessThanOrEqualTo((long) FileSerde.BUFFER_SIZE));
+            assertThat(read.get() < bytes.length / 10, is(true));
+        }
+    }
+
+    private Bulk.Output bulk(URI uri, boolean passthrough) throws Exception {
+        return Bulk.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .from(uri.toString())
+            .passthrough(Property.ofValue(passthrough))
+            .updateBody(Property.ofValue(true))
+            .build()
+            .run(runContextFactory.of());
+    }
+
+    private URI upload(List<Map<String, Object>> lines) throws Exception {
+        File tempFile = File.createTempFile(this.getClass().getSimpleName().toLowerCase() + "_", ".trs");
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            lines.forEach(throwConsumer(s -> output.write((JacksonMapper.ofJson().writeValueAsString(s) + "\n").getBytes(StandardCharsets.UTF_8))));
+        }
+
+        return storageInterface.put(TenantService.MAIN_TENANT, null, URI.create("/" + IdUtils.create() + ".ion"), new FileInputStream(tempFile));
+    }
 }
@@ -0,0 +1,156 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kestra.plugin.elasticsearch.model.CircuitBreakerMode;
+
+import co.elastic.clients.transport.rest5_client.low_level.Node;
+import co.elastic.clients.transport.rest5_client.low_level.Request;
+import co.elastic.clients.transport.rest5_client.low_level.Response;
+import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerHandlerTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerHandlerTest.class);
+
+    @Test
+    void openOnFailureRate() {
+        var breaker = breaker(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(breaker.acquire(LOGGER), is(0L));
+            breaker.record(i % 2 == 0, LOGGER);
+        }
+
+        assertThat(breaker.state(), is(CircuitBreakerHandler.State.OPEN));
+        assertThat(breaker.openedCount(), is(1L));
+        assertThat(breaker.acquire(LOGGER), greaterThan(0L));
+    }
+
+    @Test
+    void stayClosedBelowFailureRate() {
+        var breaker = breaker(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 8; i++) {
+            breaker.record(i % 4 == 0, LOGGER);
+        }
+
+        assertThat(breaker.state(), is(CircuitBreakerHandler.State.CLOSED));
+        assertThat(breaker.acquire(LOGGER), is(0L));
+    }
+
+    @Test
+    void closeAfterSuccessfulProbes() {
+        var breaker = breaker(Duration.ZERO);
+        open(breaker);
+
+        assertThat(breaker.acquire(LOGGER), is(0L));
+        assertThat(breaker.state(), is(CircuitBreakerHandler.State.HALF_OPEN));
+        assertThat(breaker.acquire(LOGGER), is(0L));
+        // no more probes until the ones in flight complete
+        assertThat(breaker.acquire(LOGGER), greaterThan(0L));
+
+        breaker.record(false, LOGGER);
+        breaker.record(false, LOGGER);
+
+        assertThat(breaker.state(), is(CircuitBreakerHandler.State.CLOSED));
+        assertThat(breaker.acquire(LOGGER), is(0L));
+    }
+
+    @Test
+    void reopenOnFailedProbe() {
+        var breaker = breaker(Duration.ZERO);
+        open(breaker);
+
+        assertThat(breaker.acquire(LOGGER), is(0L));
+        breaker.record(true, LOGGER);
+
+        assertThat(breaker.state(), is(CircuitBreakerHandler.State.OPEN));
+        assertThat(breaker.openedCount(), is(2L));
+    }
+
+    @Test
+    void rejectWithoutMarkingHostsDead() throws Exception {
+        var breaker = breaker(Duration.ofMinutes(1));
+        open(breaker);
+        var handler = new CircuitBreakerHandler(breaker, LOGGER);
+        var failures = new AtomicInteger();
+
+        try (var client = Rest5Client.builder(new HttpHost("http", "127.0.0.1", 1), new HttpHost("http", "127.0.0.1", 2))
+            .setFailureListener(new Rest5Client.FailureListener() {
+                @Override
+                public void onFailure(Node node) {
+                    failures.incrementAndGet();
+                }
+            })
+            .build()) {
+            assertThrows(
+                CircuitBreakerHandler.CircuitBreakerOpenException.class,
+                () -> handler.execute(() -> client.performRequest(new Request("GET", "/")))
+            );
+
+            var future = handler.executeAsync(() -> CompletableFuture.<Response>supplyAsync(() ->
+            {
+                try {
+                    return client.performRequest(new Request("GET", "/"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+            var exception = assertThrows(ExecutionException.class, future::get);
+            assertThat(exception.getCause(), instanceOf(CircuitBreakerHandler.CircuitBreakerOpenException.class));
+        }
+
+        // the low-level client never saw the requests, so no host was marked dead
+        assertThat(failures.get(), is(0));
+        assertThat(breaker.openedCount(), is(1L));
+    }
+
+    @Test
+    void shareBreakerByKey() {
+        var settings = settings(Duration.ZERO);
+        var key = new Object();
+
+        var breaker = ClientCache.acquireBreaker(key, settings);
+        assertThat(ClientCache.acquireBreaker(key, settings) == breaker, is(true));
+
+        ClientCache.releaseBreaker(key);
+        ClientCache.releaseBreaker(key);
+    }
+
+    private static void open(CircuitBreakerHandler.Breaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(true, LOGGER);
+        }
+
+        assertThat(breaker.state(), is(CircuitBreakerHandler.State.OPEN));
+    }
+
+    private static CircuitBreakerHandler.Breaker breaker(Duration openDuration) {
+        return new CircuitBreakerHandler.Breaker(settings(openDuration));
+    }
+
+    private static CircuitBreakerHandler.Settings settings(Duration openDuration) {
+        return new CircuitBreakerHandler.Settings(
+            0.5,
+            Duration.ofSeconds(10),
+            4,
+            openDuration,
+            2,
+            CircuitBreakerMode.FAIL_FAST
+        );
+    }
+}
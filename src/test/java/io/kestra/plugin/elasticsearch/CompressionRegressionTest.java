@@ -0,0 +1,102 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContextFactory;
+import io.kestra.plugin.elasticsearch.model.Compression;
+
+import jakarta.inject.Inject;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+@KestraTest
+class CompressionRegressionTest {
+    private static HttpServer server;
+    private static String host;
+    private static final AtomicReference<String> CONTENT_ENCODING = new AtomicReference<>();
+    private static final AtomicReference<String> BODY = new AtomicReference<>();
+    private static final AtomicInteger BODY_SIZE = new AtomicInteger();
+
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", exchange ->
+        {
+            var encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            var received = exchange.getRequestBody().readAllBytes();
+
+            CONTENT_ENCODING.set(encoding);
+            BODY_SIZE.set(received.length);
+            if ("gzip".equals(encoding)) {
+                try (var input = new GZIPInputStream(new ByteArrayInputStream(received))) {
+                    BODY.set(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            } else {
+                BODY.set(new String(received, StandardCharsets.UTF_8));
+            }
+
+            var body = """
+                {"_index":"compression_regression","_id":"doc-1","_version":1,"result":"created","_shards":{"total":1,"successful":1,"failed":0},"_seq_no":0,"_primary_term":1}
+                """;
+            var payload = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("content-type", "application/json");
+            exchange.sendResponseHeaders(201, payload.length);
+            try (var output = exchange.getResponseBody()) {
+                output.write(payload);
+            }
+        });
+        server.start();
+        host = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void shouldCompressRequestBodies() throws Exception {
+        var runContext = runContextFactory.of();
+        var task = Put.builder()
+            .connection(
+                ElasticsearchConnection.builder()
+                    .hosts(List.of(host))
+                    .compression(Property.ofValue(Compression.GZIP))
+                    .build()
+            )
+            .index(Property.ofValue("compression_regression"))
+            .key(Property.ofValue("doc-1"))
+            .value(Map.of("name", "john"))
+            .build();
+
+        var output = task.run(runContext);
+
+        assertThat(output.getId(), is("doc-1"));
+        assertThat(CONTENT_ENCODING.get(), is("gzip"));
+        assertThat(BODY.get(), containsString("john"));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("bytes.sent")).findFirst().orElseThrow().getValue(), is((double) BODY_SIZE.get()));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("http.status") && "index".equals(e.getTags().get("endpoint"))).findFirst().orElseThrow().getTags().get("status"), is("201"));
+    }
+}
@@ -0,0 +1,22 @@
+package io.kestra.plugin.elasticsearch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class HttpMetricsTest {
+    @Test
+    void endpoint() {
+        assertThat(HttpMetrics.endpoint("POST", "/logs/_search?typed_keys=true"), is("search"));
+        assertThat(HttpMetrics.endpoint("POST", "/es/_search/scroll"), is("scroll"));
+        assertThat(HttpMetrics.endpoint("DELETE", "/_search/scroll"), is("clear_scroll"));
+        assertThat(HttpMetrics.endpoint("POST", "/_bulk"), is("bulk"));
+        assertThat(HttpMetrics.endpoint("PUT", "/logs/_doc/1"), is("index"));
+        assertThat(HttpMetrics.endpoint("GET", "/logs/_doc/1"), is("get"));
+        assertThat(HttpMetrics.endpoint("POST", "/_query/async"), is("esql"));
+        assertThat(HttpMetrics.endpoint("GET", "/_nodes/http"), is("nodes"));
+        assertThat(HttpMetrics.endpoint("GET", "/"), is("info"));
+        assertThat(HttpMetrics.endpoint("PUT", "/logs"), is("other"));
+    }
+}
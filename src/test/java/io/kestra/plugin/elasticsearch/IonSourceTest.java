@@ -0,0 +1,52 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.kestra.core.serializers.FileSerde;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class IonSourceTest {
+    @SuppressWarnings("unchecked")
+    @Test
+    void transcodeSources() throws Exception {
+        var mapper = new JacksonJsonpMapper();
+        var parser = mapper.jsonProvider().createParser(new StringReader("""
+            {
+                "took": 1,
+                "timed_out": false,
+                "_shards": {"total": 1, "successful": 1, "failed": 0},
+                "hits": {
+                    "total": {"value": 2, "relation": "eq"},
+                    "max_score": 1.0,
+                    "hits": [
+                        {"_index": "logs", "_id": "1", "_score": 1.0, "_source": {"name": "john", "age": 42, "tags": ["a", "b"], "nested": {"ratio": 0.5}}},
+                        {"_index": "logs", "_id": "2", "_score": 1.0}
+                    ]
+                }
+            }"""));
+
+        SearchResponse<IonSource> response = SearchResponse.createSearchResponseDeserializer(IonSource.deserializer()).deserialize(parser, mapper);
+
+        assertThat(response.hits().hits().get(1).id(), is("2"));
+
+        var output = new ByteArrayOutputStream();
+        assertThat(IonSource.writeAll(output, response.hits().hits()), is(1L));
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        FileSerde.read(new ByteArrayInputStream(output.toByteArray()), r -> result.add((Map<String, Object>) r));
+
+        assertThat(result, is(List.of(Map.of("name", "john", "age", 42, "tags", List.of("a", "b"), "nested", Map.of("ratio", 0.5)))));
+    }
+}
@@ -0,0 +1,30 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+class LatencyHistogramTest {
+    @Test
+    void percentiles() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(Duration.ofMillis(i).toNanos());
+        }
+
+        assertThat(histogram.count(), is(1000L));
+        assertThat(histogram.max(), is(Duration.ofMillis(1000)));
+        assertThat((double) histogram.percentile(0.5).toMillis(), closeTo(500, 500 * LatencyHistogram.PRECISION));
+        assertThat((double) histogram.percentile(0.99).toMillis(), closeTo(990, 990 * LatencyHistogram.PRECISION));
+        assertThat(histogram.percentile(1), is(Duration.ofMillis(1000)));
+    }
+
+    @Test
+    void empty() {
+        assertThat(new LatencyHistogram().percentile(0.5), is(Duration.ZERO));
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 
 import org.junit.jupiter.api.Test;
@@ -17,11 +18,18 @@ import io.kestra.core.serializers.FileSerde;
 import io.kestra.core.storages.StorageInterface;
 import io.kestra.core.tenant.TenantService;
 import io.kestra.core.utils.IdUtils;
+import io.kestra.plugin.elasticsearch.model.OpType;
+import io.kestra.plugin.elasticsearch.model.XContentType;
 
 import jakarta.inject.Inject;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class LoadTest extends ElsContainer {
 
@@ -60,4 +68,205 @@ class LoadTest extends ElsContainer {
         assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(10D));
         assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("records")).findFirst().orElseThrow().getValue(), is(100D));
     }
+
+    @Test
+    void runWithSmileWireFormat() throws Exception {
+        RunContext runContext = runContextFactory.of();
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        URI uri = this.uploadRows(100);
+
+        Load put = Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).wireFormat(Property.ofValue(XContentType.SMILE)).build())
+            .index(Property.ofValue(indice))
+            .from(uri.toString())
+            .chunk(Property.ofValue(10))
+            .idKey(Property.ofValue("id"))
+            .build();
+
+        Load.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(100L));
+        assertThat(runOutput.getFailedCount(), is(0L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(10D));
+    }
+
+    @Test
+    void runConcurrently() throws Exception {
+        RunContext runContext = runContextFactory.of();
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        URI uri = this.uploadRows(100);
+
+        Load put = Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .from(uri.toString())
+            .chunk(Property.ofValue(1))
+            .maxInFlightRequests(Property.ofValue(4))
+            .idKey(Property.ofValue("id"))
+            .build();
+
+        Load.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(100L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(100D));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("records")).findFirst().orElseThrow().getValue(), is(100D));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.concurrency")).findFirst().orElseThrow().getValue(), greaterThan(1D));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.concurrency")).findFirst().orElseThrow().getValue(), lessThanOrEqualTo(4D));
+    }
+
+    @Test
+    void runWithMaxChunkBytes() throws Exception {
+        RunContext runContext = runContextFactory.of();
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        URI uri = this.uploadRows(100);
+
+        Load put = Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .from(uri.toString())
+            .chunk(Property.ofValue(1000))
+            .maxChunkBytes(Property.ofValue(1L))
+            .idKey(Property.ofValue("id"))
+            .build();
+
+        Load.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(100L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(100D));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("records")).findFirst().orElseThrow().getValue(), is(100D));
+    }
+
+    @Test
+    void runWithParserThreads() throws Exception {
+        RunContext runContext = runContextFactory.of();
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        URI uri = this.uploadRows(1000);
+
+        Load put = Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .from(uri.toString())
+            .chunk(Property.ofValue(100))
+            .parserThreads(Property.ofValue(4))
+            .idKey(Property.ofValue("id"))
+            .build();
+
+        Load.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(1000L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(10D));
+    }
+
+    @Test
+    void runWithParserThreadsOnValuesSharingALine() throws Exception {
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName().toLowerCase() + "_", ".ion");
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            output.write("{id:1,name:\"john\"} {id:2,name:\"john\"}\n".getBytes(StandardCharsets.UTF_8));
+        }
+        URI uri = storageInterface.put(TenantService.MAIN_TENANT, null, URI.create("/" + IdUtils.create() + ".ion"), new FileInputStream(tempFile));
+
+        Load.LoadBuilder<?, ?> load = Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .from(uri.toString())
+            .idKey(Property.ofValue("id"));
+
+        assertThat(load.build().run(runContextFactory.of()).getSize(), is(2L));
+
+        // split on lines, the second value would be silently dropped
+        IllegalArgumentException exception = assertThrows(
+            IllegalArgumentException.class,
+            () -> load.parserThreads(Property.ofValue(4)).build().run(runContextFactory.of())
+        );
+        assertThat(exception.getMessage(), containsString("exactly one Ion value"));
+    }
+
+    @Test
+    void runWithIndexExpression() throws Exception {
+        RunContext runContext = runContextFactory.of();
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        URI uri = this.uploadRows(100);
+
+        Load put = Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .indexExpression(Property.ofExpression(indice + "_{{ row.id % 2 }}"))
+            .from(uri.toString())
+            .chunk(Property.ofValue(10))
+            .idKey(Property.ofValue("id"))
+            .build();
+
+        Load.Output runOutput = put.run(runContext);
+
+        assertThat(runOutput.getSize(), is(100L));
+        assertThat(runOutput.getFailedCount(), is(0L));
+
+        // every record is routed by its own id
+        for (int id = 0; id < 2; id++) {
+            Get.Output get = Get.builder()
+                .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+                .index(Property.ofValue(indice + "_" + id))
+                .key(Property.ofValue(String.valueOf(id)))
+                .build()
+                .run(runContextFactory.of());
+
+            assertThat(get.getRow(), notNullValue());
+        }
+    }
+
+    @Test
+    void runWithOpTypes() throws Exception {
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+
+        URI uri = this.uploadRows(10);
+
+        Load.Output created = this.load(indice, uri, OpType.CREATE);
+        assertThat(created.getSize(), is(10L));
+        assertThat(created.getFailedCount(), is(0L));
+
+        Load.Output duplicates = this.load(indice, uri, OpType.CREATE);
+        assertThat(duplicates.getFailedCount(), is(10L));
+        assertThat(duplicates.getFailedUri(), notNullValue());
+
+        Load.Output updated = this.load(indice, uri, OpType.UPDATE);
+        assertThat(updated.getSize(), is(10L));
+        assertThat(updated.getFailedCount(), is(0L));
+
+        Load.Output deleted = this.load(indice, uri, OpType.DELETE);
+        assertThat(deleted.getSize(), is(10L));
+        assertThat(deleted.getFailedCount(), is(0L));
+    }
+
+    private Load.Output load(String indice, URI uri, OpType opType) throws Exception {
+        return Load.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .index(Property.ofValue(indice))
+            .from(uri.toString())
+            .opType(Property.ofValue(opType))
+            .idKey(Property.ofValue("id"))
+            .build()
+            .run(runContextFactory.of());
+    }
+
+    private URI uploadRows(int count) throws Exception {
+        File tempFile = File.createTempFile(this.getClass().getSimpleName().toLowerCase() + "_", ".trs");
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            for (int i = 0; i < count; i++) {
+                FileSerde.write(
+                    output, ImmutableMap.of(
+                        "id", i,
+                        "name", "john"
+                    )
+                );
+            }
+        }
+
+        return storageInterface.put(TenantService.MAIN_TENANT, null, URI.create("/" + IdUtils.create() + ".ion"), new FileInputStream(tempFile));
+    }
 }
@@ -0,0 +1,82 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.jupiter.api.Test;
+
+import co.elastic.clients.transport.rest5_client.low_level.Node;
+import co.elastic.clients.transport.rest5_client.low_level.NodeSelector;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+class NodeHealthTest {
+    private static final Node FAST = new Node(new HttpHost("http", "fast", 9200));
+    private static final Node SLOW = new Node(new HttpHost("http", "slow", 9200));
+    private static final Node NEW = new Node(new HttpHost("http", "new", 9200));
+
+    @Test
+    void skipSlowNodes() {
+        var health = new NodeHealth();
+        health.score(FAST.getHost()).record("search", Duration.ofMillis(10).toNanos(), false, false);
+        health.score(SLOW.getHost()).record("search", Duration.ofMillis(500).toNanos(), false, false);
+
+        assertThat(select(health, FAST, SLOW, NEW), contains(FAST, NEW));
+    }
+
+    @Test
+    void compareLatenciesOfTheSameEndpoints() {
+        var health = new NodeHealth();
+        health.score(FAST.getHost()).record("bulk", Duration.ofMillis(800).toNanos(), false, false);
+        health.score(FAST.getHost()).record("search", Duration.ofMillis(10).toNanos(), false, false);
+        health.score(SLOW.getHost()).record("search", Duration.ofMillis(10).toNanos(), false, false);
+        health.score(NEW.getHost()).record("bulk", Duration.ofMillis(900).toNanos(), false, false);
+
+        // slow bulk requests don't make a node slower than the ones serving searches
+        assertThat(select(health, FAST, SLOW, NEW), contains(FAST, SLOW, NEW));
+
+        health.score(SLOW.getHost()).record("search", Duration.ofSeconds(2).toNanos(), false, false);
+        assertThat(select(health, FAST, SLOW, NEW), contains(FAST, NEW));
+    }
+
+    @Test
+    void ejectTimingOutNodes() {
+        var health = new NodeHealth();
+        health.score(FAST.getHost()).record("search", Duration.ofMillis(10).toNanos(), true, true);
+
+        assertThat(health.score(FAST.getHost()).isHealthy(System.nanoTime()), is(false));
+        assertThat(select(health, FAST, SLOW), contains(SLOW));
+    }
+
+    @Test
+    void ejectFailingNodes() {
+        var score = new NodeHealth().score(FAST.getHost());
+
+        score.record("search", Duration.ofMillis(10).toNanos(), true, false);
+        assertThat(score.isHealthy(System.nanoTime()), is(true));
+
+        score.record("search", Duration.ofMillis(10).toNanos(), true, false);
+        assertThat(score.isHealthy(System.nanoTime()), is(false));
+        assertThat(score.isHealthy(System.nanoTime() + NodeHealth.EJECTION.toNanos()), is(true));
+    }
+
+    @Test
+    void keepNodesWhenAllAreEjected() {
+        var health = new NodeHealth();
+        health.score(FAST.getHost()).record("search", Duration.ofMillis(10).toNanos(), true, true);
+        health.score(SLOW.getHost()).record("search", Duration.ofMillis(10).toNanos(), true, true);
+
+        assertThat(select(health, FAST, SLOW), contains(FAST, SLOW));
+    }
+
+    private static List<Node> select(NodeHealth health, Node... nodes) {
+        List<Node> selected = new ArrayList<>(List.of(nodes));
+        health.selector(NodeSelector.ANY).select(selected);
+
+        return selected;
+    }
+}
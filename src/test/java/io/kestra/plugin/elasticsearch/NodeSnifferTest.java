@@ -0,0 +1,79 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.jupiter.api.Test;
+
+import io.kestra.core.serializers.JacksonMapper;
+
+import co.elastic.clients.transport.rest5_client.low_level.Node;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+class NodeSnifferTest {
+    @Test
+    void parse() throws Exception {
+        var response = JacksonMapper.ofJson().readTree("""
+            {
+              "nodes": {
+                "a": {"name": "es-1", "version": "9.3.0", "roles": ["data", "ingest"], "attributes": {"zone": "eu-1a"}, "http": {"publish_address": "es-1.local/10.0.0.1:9200"}},
+                "b": {"name": "es-2", "version": "9.3.0", "roles": ["master"], "http": {"publish_address": "[::1]:9201"}},
+                "c": {"name": "es-3", "version": "9.3.0", "roles": ["data"]}
+              }
+            }
+            """);
+
+        var nodes = NodeSniffer.parse("https", response);
+
+        assertThat(nodes, hasSize(2));
+        assertThat(nodes.getFirst().getHost(), is(new HttpHost("https", "es-1.local", 9200)));
+        assertThat(nodes.getFirst().getName(), is("es-1"));
+        assertThat(nodes.getFirst().getAttributes().get("zone"), contains("eu-1a"));
+        assertThat(nodes.get(1).getHost(), is(new HttpHost("https", "::1", 9201)));
+        assertThat(nodes.get(1).getRoles().isMasterEligible(), is(true));
+    }
+
+    @Test
+    void httpHost() {
+        assertThat(NodeSniffer.httpHost("http", "10.0.0.1:9200"), is(new HttpHost("http", "10.0.0.1", 9200)));
+        assertThat(NodeSniffer.httpHost("http", "/10.0.0.1:9200"), is(new HttpHost("http", "10.0.0.1", 9200)));
+    }
+
+    @Test
+    void selector() {
+        var master = node("master", "eu-1a", "master");
+        var dataA = node("data-a", "eu-1a", "data");
+        var dataB = node("data-b", "eu-1b", "data");
+
+        List<Node> nodes = new ArrayList<>(List.of(master, dataA, dataB));
+        NodeSniffer.selector("zone", null).select(nodes);
+        assertThat(nodes, contains(dataA, dataB));
+
+        nodes = new ArrayList<>(List.of(master, dataA, dataB));
+        NodeSniffer.selector("zone", "eu-1b").select(nodes);
+        assertThat(nodes, contains(dataB));
+
+        // no node left in the preferred zone: fall back to the other ones
+        nodes = new ArrayList<>(List.of(master, dataA));
+        NodeSniffer.selector("zone", "eu-1b").select(nodes);
+        assertThat(nodes, contains(dataA));
+    }
+
+    private static Node node(String name, String zone, String role) {
+        return new Node(
+            new HttpHost("http", name, 9200),
+            null,
+            name,
+            "9.3.0",
+            new Node.Roles(Set.of(role)),
+            Map.of("zone", List.of(zone))
+        );
+    }
+}
@@ -1,5 +1,6 @@
 package io.kestra.plugin.elasticsearch;
 
+import java.time.Duration;
 import java.util.Locale;
 import java.util.Map;
 
@@ -12,6 +13,7 @@ import io.kestra.core.runners.RunContext;
 import io.kestra.core.utils.IdUtils;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -64,6 +66,78 @@ class PutGetTest extends ElsContainer {
         assertThat(runOutput.getRow().get("name"), is("Jane Doe"));
     }
 
+    @Test
+    void runWithReusedClient() throws Exception {
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+        ElasticsearchConnection connection = ElasticsearchConnection.builder()
+            .hosts(hosts)
+            .reuseClient(Property.ofValue(true))
+            .build();
+
+        RunContext putContext = runContextFactory.of();
+        Put.Output putOutput = Put.builder()
+            .connection(connection)
+            .index(Property.ofValue(indice))
+            .value(Map.of("name", "John Doe"))
+            .build()
+            .run(putContext);
+
+        int cached = ClientCache.size();
+
+        RunContext getContext = runContextFactory.of();
+        Get.Output getOutput = Get.builder()
+            .connection(connection)
+            .index(Property.ofValue(indice))
+            .key(Property.ofValue(putOutput.getId()))
+            .build()
+            .run(getContext);
+
+        assertThat(getOutput.getRow().get("name"), is("John Doe"));
+        assertThat(ClientCache.size(), is(cached));
+        assertThat(getContext.metrics().stream().filter(e -> e.getName().equals("bytes.received")).findFirst().orElseThrow().getValue(), greaterThan(0D));
+    }
+
+    @Test
+    void runWithPoolAndTimeouts() throws Exception {
+        RunContext runContext = runContextFactory.of();
+        String indice = "ut_" + IdUtils.create().toLowerCase(Locale.ROOT);
+        ElasticsearchConnection connection = ElasticsearchConnection.builder()
+            .hosts(hosts)
+            .pool(
+                ElasticsearchConnection.Pool.builder()
+                    .maxConnections(Property.ofValue(4))
+                    .maxConnectionsPerRoute(Property.ofValue(2))
+                    .keepAlive(Property.ofValue(Duration.ofSeconds(30)))
+                    .ioThreads(Property.ofValue(1))
+                    .build()
+            )
+            .timeouts(
+                ElasticsearchConnection.Timeouts.builder()
+                    .connect(Property.ofValue(Duration.ofSeconds(5)))
+                    .socket(Property.ofValue(Duration.ofSeconds(60)))
+                    .response(Property.ofValue(Duration.ofSeconds(60)))
+                    .connectionRequest(Property.ofValue(Duration.ofSeconds(5)))
+                    .build()
+            )
+            .build();
+
+        Put.Output putOutput = Put.builder()
+            .connection(connection)
+            .index(Property.ofValue(indice))
+            .value(Map.of("name", "John Doe"))
+            .build()
+            .run(runContext);
+
+        Get.Output getOutput = Get.builder()
+            .connection(connection)
+            .index(Property.ofValue(indice))
+            .key(Property.ofValue(putOutput.getId()))
+            .build()
+            .run(runContext);
+
+        assertThat(getOutput.getRow().get("name"), is("John Doe"));
+    }
+
     @Test
     void shouldThrowWhenDocumentNotFound() throws Exception {
         RunContext runContext = runContextFactory.of(ImmutableMap.of("variable", Map.of("name", "John Doe")));
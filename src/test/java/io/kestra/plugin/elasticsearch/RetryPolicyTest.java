@@ -0,0 +1,138 @@
+package io.kestra.plugin.elasticsearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryPolicyTest {
+    @Test
+    void retryIdempotentEndpoints() throws Exception {
+        var policy = policy(3, false);
+        var calls = new AtomicInteger();
+
+        String result = policy.execute("search", () ->
+        {
+            if (calls.incrementAndGet() < 3) {
+                throw new SocketException("Connection reset");
+            }
+
+            return "ok";
+        });
+
+        assertThat(result, is("ok"));
+        assertThat(calls.get(), is(3));
+    }
+
+    @Test
+    void giveUpAfterMaxAttempts() {
+        var policy = policy(2, false);
+        var calls = new AtomicInteger();
+
+        assertThrows(SocketException.class, () -> policy.execute("get", () ->
+        {
+            calls.incrementAndGet();
+            throw new SocketException("Connection reset");
+        }));
+        assertThat(calls.get(), is(2));
+    }
+
+    @Test
+    void doNotRetryOtherEndpointsOrErrors() {
+        var policy = policy(3, false);
+        var calls = new AtomicInteger();
+
+        assertThrows(SocketException.class, () -> policy.execute("bulk", () ->
+        {
+            calls.incrementAndGet();
+            throw new SocketException("Connection reset");
+        }));
+        assertThrows(IOException.class, () -> policy.execute("search", () ->
+        {
+            calls.incrementAndGet();
+            throw new IOException("Unexpected");
+        }));
+        assertThat(calls.get(), is(2));
+    }
+
+    @Test
+    void doNotRetryScrollPages() {
+        var policy = policy(3, false);
+        var calls = new AtomicInteger();
+
+        assertThrows(SocketTimeoutException.class, () -> policy.execute("scroll", () ->
+        {
+            calls.incrementAndGet();
+            throw new SocketTimeoutException("Read timed out");
+        }));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    void retryTimeoutsButNotInterruptions() {
+        var policy = policy(3, false);
+
+        assertThat(policy.isRetryable(new SocketTimeoutException("Read timed out")), is(true));
+        assertThat(policy.isRetryable(new InterruptedIOException("Interrupted")), is(false));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThat(policy.isRetryable(new SocketException("Connection reset")), is(false));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void retryBulkWhenEnabled() throws Exception {
+        var policy = policy(3, true);
+        var calls = new AtomicInteger();
+
+        policy.execute("bulk", () ->
+        {
+            if (calls.incrementAndGet() < 2) {
+                throw new SocketException("Connection reset");
+            }
+
+            return null;
+        });
+
+        assertThat(calls.get(), is(2));
+    }
+
+    @Test
+    void backoff() {
+        var policy = policy(10, false);
+
+        for (int attempt = 1; attempt < 10; attempt++) {
+            Duration expected = Duration.ofMillis(Math.min(1L << (attempt - 1), 20));
+
+            assertThat(policy.backoff(attempt), lessThanOrEqualTo(expected));
+            assertThat(policy.backoff(attempt), greaterThanOrEqualTo(expected.dividedBy(2)));
+        }
+    }
+
+    private static RetryPolicy policy(int maxAttempts, boolean bulk) {
+        return RetryPolicy.builder()
+            .maxAttempts(maxAttempts)
+            .initialBackoff(Duration.ofMillis(1))
+            .maxBackoff(Duration.ofMillis(20))
+            .jitter(0.5)
+            .retryableStatuses(Set.of(429, 502, 503, 504))
+            .bulk(bulk)
+            .logger(LoggerFactory.getLogger(RetryPolicyTest.class))
+            .build();
+    }
+}
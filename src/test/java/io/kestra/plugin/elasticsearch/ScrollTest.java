@@ -1,17 +1,31 @@
 package io.kestra.plugin.elasticsearch;
 
+import java.io.BufferedInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
 import io.kestra.core.models.property.Property;
 import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.FileSerde;
+import io.kestra.core.storages.StorageInterface;
+import io.kestra.core.tenant.TenantService;
+import io.kestra.plugin.elasticsearch.model.Pagination;
+
+import jakarta.inject.Inject;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
 class ScrollTest extends ElsContainer {
 
+    @Inject
+    private StorageInterface storageInterface;
+
     @Test
     void run() throws Exception {
         RunContext runContext = runContextFactory.of();
@@ -53,4 +67,103 @@ class ScrollTest extends ElsContainer {
 
         assertThat(run.getSize(), is(899L));
     }
+
+    @Test
+    void runOnVirtualThreads() throws Exception {
+        RunContext runContext = runContextFactory.of();
+
+        Scroll task = Scroll.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).virtualThreads(Property.ofValue(true)).build())
+            .indexes(Property.ofValue(Collections.singletonList("gbif")))
+            .request("""
+                {
+                    "size": 100,
+                    "query": {
+                        "match_all": {}
+                    }
+                }""")
+            .build();
+
+        Scroll.Output run = task.run(runContext);
+
+        assertThat(run.getSize(), is(899L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(10D));
+    }
+
+    @Test
+    void runWithPointInTime() throws Exception {
+        RunContext runContext = runContextFactory.of();
+
+        Scroll task = Scroll.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .indexes(Property.ofValue(Collections.singletonList("gbif")))
+            .pagination(Property.ofValue(Pagination.POINT_IN_TIME))
+            .request("""
+                {
+                    "size": 100,
+                    "query": {
+                        "match_all": {}
+                    }
+                }""")
+            .build();
+
+        Scroll.Output run = task.run(runContext);
+
+        assertThat(run.getSize(), is(899L));
+        assertThat(runContext.metrics().stream().filter(e -> e.getName().equals("requests.count")).findFirst().orElseThrow().getValue(), is(10D));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void runSliced() throws Exception {
+        RunContext runContext = runContextFactory.of();
+
+        Scroll task = Scroll.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .indexes(Property.ofValue(Collections.singletonList("gbif")))
+            .slices(Property.ofValue(3))
+            .request("""
+                {
+                    "size": 100,
+                    "query": {
+                        "match_all": {}
+                    }
+                }""")
+            .build();
+
+        Scroll.Output run = task.run(runContext);
+
+        assertThat(run.getSize(), is(899L));
+
+        // the part files of the slices are joined into one readable file
+        var inputStream = new BufferedInputStream(storageInterface.get(TenantService.MAIN_TENANT, null, run.getUri()), FileSerde.BUFFER_SIZE);
+        List<Map<String, Object>> result = new ArrayList<>();
+        FileSerde.read(inputStream, r -> result.add((Map<String, Object>) r));
+
+        assertThat(result.size(), is(899));
+        assertThat(result.stream().map(r -> r.get("key")).distinct().count(), is(899L));
+    }
+
+    @Test
+    void runWithMaxRecords() throws Exception {
+        RunContext runContext = runContextFactory.of();
+
+        Scroll task = Scroll.builder()
+            .connection(ElasticsearchConnection.builder().hosts(hosts).build())
+            .indexes(Property.ofValue(Collections.singletonList("gbif")))
+            .keepAlive(Property.ofValue(Duration.ofSeconds(30)))
+            .pageSize(Property.ofValue(100))
+            .maxRecords(Property.ofValue(250L))
+            .request("""
+                {
+                    "query": {
+                        "match_all": {}
+                    }
+                }""")
+            .build();
+
+        Scroll.Output run = task.run(runContext);
+
+        assertThat(run.getSize(), is(250L));
+    }
 }
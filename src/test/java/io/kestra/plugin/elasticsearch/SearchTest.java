@@ -14,12 +14,15 @@ import io.kestra.core.runners.RunContext;
 import io.kestra.core.serializers.FileSerde;
 import io.kestra.core.storages.StorageInterface;
 import io.kestra.core.tenant.TenantService;
+import io.kestra.plugin.elasticsearch.model.XContentType;
 
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import jakarta.inject.Inject;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class SearchTest extends ElsContainer {
 
@@ -49,6 +52,51 @@ class SearchTest extends ElsContainer {
         assertThat(run.getRows().get(0).get("genericName"), is("Larus"));
     }
 
+    @Test
+    void runWithWireFormats() throws Exception {
+        for (XContentType wireFormat : List.of(XContentType.SMILE, XContentType.CBOR)) {
+            RunContext runContext = runContextFactory.of();
+
+            Search task = Search.builder()
+                .connection(ElasticsearchConnection.builder().hosts(hosts).wireFormat(Property.ofValue(wireFormat)).build())
+                .indexes(Property.ofValue(Collections.singletonList("gbif")))
+                .request("""
+                    {
+                        "query": {
+                            "term": {
+                                "publishingCountry.keyword": "BE"
+                            }
+                        },
+                        "sort": {
+                            "key": "asc"
+                        }
+                    }""")
+                .fetchType(Property.ofValue(FetchType.FETCH_ONE))
+                .build();
+
+            Search.Output run = task.run(runContext);
+
+            assertThat(run.getTotal(), is(28L));
+            assertThat(run.getRow().get("key"), is(925277090));
+        }
+    }
+
+    @Test
+    void failWithWireFormatsLikeJson() {
+        for (XContentType wireFormat : List.of(XContentType.JSON, XContentType.SMILE, XContentType.CBOR)) {
+            Search task = Search.builder()
+                .connection(ElasticsearchConnection.builder().hosts(hosts).wireFormat(Property.ofValue(wireFormat)).build())
+                .indexes(Property.ofValue(Collections.singletonList("ut_missing")))
+                .request("{}")
+                .build();
+
+            ElasticsearchException exception = assertThrows(ElasticsearchException.class, () -> task.run(runContextFactory.of()));
+
+            assertThat(exception.status(), is(404));
+            assertThat(exception.error().type(), is("index_not_found_exception"));
+        }
+    }
+
     @Test
     void runFetchOne() throws Exception {
         RunContext runContext = runContextFactory.of();